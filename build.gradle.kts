@@ -138,3 +138,10 @@ tasks.register<JavaExec>("disassemble") {
     classpath = sourceSets.main.get().runtimeClasspath
     args("src/test/resources/simple_calculator.obj")
 }
+
+tasks.register<JavaExec>("benchmark") {
+    group = "verification"
+
+    mainClass.set("dev.askov.mjcompiler.Benchmarks")
+    classpath = sourceSets.test.get().runtimeClasspath
+}
@@ -24,12 +24,20 @@ import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
 import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
 import dev.askov.mjcompiler.symboltable.MJTab;
 import dev.askov.mjcompiler.util.MJUtils;
+import dev.askov.mjcompiler.vmt.DispatchPlan;
+import dev.askov.mjcompiler.vmt.DispatchPlanner;
+import dev.askov.mjcompiler.vmt.DispatchProfile;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Stack;
+import java.util.function.IntUnaryOperator;
 import rs.etf.pp1.mj.runtime.Code;
 import rs.etf.pp1.symboltable.Tab;
 import rs.etf.pp1.symboltable.concepts.Obj;
@@ -66,11 +74,94 @@ public class CodeGenerator extends VisitorAdaptor {
   private int currentConditionalJump = 0;
   private final Stack<Obj> thisParameterObjs = new Stack<>();
   private final Map<Obj, List<Integer>> addressesToPatch = new HashMap<>();
+  private final Set<Obj> generatedMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+  private int virtualCallCount = 0;
+  private int devirtualizedCallCount = 0;
+  private boolean instrumentDispatch = false;
+  private int firstDispatchCounter;
+  private int dispatchCounterCount = 0;
+  private DispatchProfile dispatchProfile;
+  private final ReachabilityAnalyzer reachabilityAnalyzer;
+  private final DispatchPlanner dispatchPlanner;
+  private final Stack<Integer> discardedCodeStarts = new Stack<>();
+  private int discardedCodeSize = 0;
+  private int deadCodeSize = 0;
+  private boolean devirtualizeMonomorphicCalls = false;
+  private ConstantFolder constantFolder;
+  private VectorFusion vectorFusion;
+  private final Map<String, Obj> vectorKernels = new LinkedHashMap<>();
+  private final Map<Obj, VectorFusion.Tree> vectorKernelTrees = new IdentityHashMap<>();
+  private int vectorLoopUnrollFactor = 1;
+  private int unrolledVectorLoopCount = 0;
+
+  public CodeGenerator() {
+    this(null);
+  }
+
+  /**
+   * Creates a code generator that only emits the methods that the given analysis has found
+   * reachable, and dispatches only on the classes it has found instantiated. The code of any other
+   * method is discarded once the method has been generated.
+   */
+  public CodeGenerator(ReachabilityAnalyzer reachabilityAnalyzer) {
+    this.reachabilityAnalyzer = reachabilityAnalyzer;
+    dispatchPlanner =
+        reachabilityAnalyzer != null
+            ? DispatchPlanner.plan(InheritanceTree.ROOT_NODE, reachabilityAnalyzer::isInstantiated)
+            : DispatchPlanner.plan(InheritanceTree.ROOT_NODE);
+  }
+
+  /**
+   * Returns the node of the receiver's static type if the call has to be dispatched on the class
+   * of the receiver, i.e. if the method is overridable and the static type has subclasses.
+   */
+  static Optional<InheritanceTreeNode> getDispatchedReceiverTypeNode(
+      Obj method, Obj thisParameterObj) {
+    if (thisParameterObj.equals(Tab.noObj)
+        || method == MJTab.lenMethod
+        || method == MJTab.ordMethod
+        || method == MJTab.chrMethod) {
+      return Optional.empty();
+    }
+    return InheritanceTree.getNode(MJTab.findObjForClass(thisParameterObj.getType()))
+        .filter(
+            node ->
+                node.getDispatchTable().containsSameSignatureMethod(method) && node.hasChildren());
+  }
 
   public int getMainPc() {
     return mainPc;
   }
 
+  public int getVirtualCallCount() {
+    return virtualCallCount;
+  }
+
+  /** Returns the number of virtual call sites that have been bound statically. */
+  public int getDevirtualizedCallCount() {
+    return devirtualizedCallCount;
+  }
+
+  /** Returns the number of bytes of code of unreachable methods that has been discarded. */
+  public int getDiscardedCodeSize() {
+    return discardedCodeSize;
+  }
+
+  /** Returns the number of bytes of code of dead branches and constant conditions discarded. */
+  public int getDeadCodeSize() {
+    return deadCodeSize;
+  }
+
+  /** Returns the number of loops generated for the different forms of fused expressions. */
+  public int getVectorKernelCount() {
+    return vectorKernels.size();
+  }
+
+  /** Returns the number of vector helper methods and fused loops that have been unrolled. */
+  public int getUnrolledVectorLoopCount() {
+    return unrolledVectorLoopCount;
+  }
+
   /**
    * Appends the MicroJava Virtual Machine bytecode equivalent of the following function to the
    * <code>rs.etf.pp1.mj.runtime.Code.buf</code> buffer:
@@ -326,69 +417,10 @@ public class CodeGenerator extends VisitorAdaptor {
    * }
    * </pre>
    */
-  public static void generateVecTimesVecMethod() {
+  public void generateVecTimesVecMethod() {
     MJTab.vecTimesVecMethod.setAdr(Code.pc);
-
-    Code.put(Code.enter);
-    Code.put(2);
-    Code.put(5);
-
-    Code.put(Code.load_n);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.eq);
-    Code.put2(54);
-    Code.put(Code.load_n + 1);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.eq);
-    Code.put2(49);
-    Code.put(Code.load_n);
-    Code.put(Code.arraylength);
-    Code.put(Code.store_2);
-
-    Code.put(Code.load_2);
-    Code.put(Code.load_1);
-    Code.put(Code.arraylength);
-    Code.put(Code.jcc + Code.ne);
-    Code.put2(40);
-    Code.put(Code.const_n);
-    Code.put(Code.store);
-    Code.put(4);
-
-    Code.put(Code.load_2);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.le);
-    Code.put2(28);
-    Code.put(Code.const_n);
-    Code.put(Code.store_3);
-
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.load_n);
-    Code.put(Code.load_3);
-    Code.put(Code.aload);
-    Code.put(Code.load_1);
-    Code.put(Code.load_3);
-    Code.put(Code.aload);
-    Code.put(Code.mul);
-    Code.put(Code.add);
-    Code.put(Code.store);
-    Code.put(4);
-    Code.put(Code.inc);
-    Code.put(3);
-    Code.put(1);
-    Code.put(Code.load_3);
-    Code.put(Code.load_2);
-    Code.put(Code.jcc + Code.ge);
-    Code.put2(6);
-    Code.put(Code.jmp);
-    Code.put2(-20);
-
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.exit);
-    Code.put(Code.return_);
-    Code.put(Code.trap);
-    Code.put(RuntimeError.VECTOR_OPERATION_ERROR.getCode());
+    generateVectorLoop(
+        VectorFusion.Tree.dotProduct(VectorFusion.Tree.vector(), VectorFusion.Tree.vector()));
   }
 
   /**
@@ -407,63 +439,15 @@ public class CodeGenerator extends VisitorAdaptor {
    *         i++;
    *       } <b>while</b> (i < la);
    *     }
-   *     <b>return</b> result[0];
+   *     <b>return</b> result;
    *   }
    * }
    * </pre>
    */
-  public static void generateVecTimesScalarMethod() {
+  public void generateVecTimesScalarMethod() {
     MJTab.vecTimesScalarMethod.setAdr(Code.pc);
-
-    Code.put(Code.enter);
-    Code.put(2);
-    Code.put(5);
-
-    Code.put(Code.load_n);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.eq);
-    Code.put2(42);
-    Code.put(Code.load_n);
-    Code.put(Code.arraylength);
-    Code.put(Code.store_2);
-    Code.put(Code.load_2);
-    Code.put(Code.newarray);
-    Code.put(1);
-    Code.put(Code.store);
-    Code.put(4);
-
-    Code.put(Code.load_2);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.le);
-    Code.put2(25);
-    Code.put(Code.const_n);
-    Code.put(Code.store_3);
-
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.load_3);
-    Code.put(Code.load_n);
-    Code.put(Code.load_3);
-    Code.put(Code.aload);
-    Code.put(Code.load_1);
-    Code.put(Code.mul);
-    Code.put(Code.astore);
-    Code.put(Code.inc);
-    Code.put(3);
-    Code.put(1);
-    Code.put(Code.load_3);
-    Code.put(Code.load_2);
-    Code.put(Code.jcc + Code.ge);
-    Code.put2(6);
-    Code.put(Code.jmp);
-    Code.put2(-17);
-
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.exit);
-    Code.put(Code.return_);
-    Code.put(Code.trap);
-    Code.put(RuntimeError.VECTOR_OPERATION_ERROR.getCode());
+    generateVectorLoop(
+        VectorFusion.Tree.product(VectorFusion.Tree.vector(), VectorFusion.Tree.scalar()));
   }
 
   /**
@@ -482,63 +466,15 @@ public class CodeGenerator extends VisitorAdaptor {
    *         i++;
    *       } <b>while</b> (i < la);
    *     }
-   *     <b>return</b> result[0];
+   *     <b>return</b> result;
    *   }
    * }
    * </pre>
    */
-  public static void generateScalarTimesVectorMethod() {
+  public void generateScalarTimesVectorMethod() {
     MJTab.scalarTimesVecMethod.setAdr(Code.pc);
-
-    Code.put(Code.enter);
-    Code.put(2);
-    Code.put(5);
-
-    Code.put(Code.load_1);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.eq);
-    Code.put2(42);
-    Code.put(Code.load_1);
-    Code.put(Code.arraylength);
-    Code.put(Code.store_2);
-    Code.put(Code.load_2);
-    Code.put(Code.newarray);
-    Code.put(1);
-    Code.put(Code.store);
-    Code.put(4);
-
-    Code.put(Code.load_2);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.le);
-    Code.put2(25);
-    Code.put(Code.const_n);
-    Code.put(Code.store_3);
-
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.load_3);
-    Code.put(Code.load_1);
-    Code.put(Code.load_3);
-    Code.put(Code.aload);
-    Code.put(Code.load_n);
-    Code.put(Code.mul);
-    Code.put(Code.astore);
-    Code.put(Code.inc);
-    Code.put(3);
-    Code.put(1);
-    Code.put(Code.load_3);
-    Code.put(Code.load_2);
-    Code.put(Code.jcc + Code.ge);
-    Code.put2(6);
-    Code.put(Code.jmp);
-    Code.put2(-17);
-
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.exit);
-    Code.put(Code.return_);
-    Code.put(Code.trap);
-    Code.put(RuntimeError.VECTOR_OPERATION_ERROR.getCode());
+    generateVectorLoop(
+        VectorFusion.Tree.product(VectorFusion.Tree.scalar(), VectorFusion.Tree.vector()));
   }
 
   /**
@@ -563,136 +499,494 @@ public class CodeGenerator extends VisitorAdaptor {
    * }
    * </pre>
    */
-  public static void generateVecPlusVecMethod() {
+  public void generateVecPlusVecMethod() {
     MJTab.vecPlusVecMethod.setAdr(Code.pc);
+    generateVectorLoop(
+        VectorFusion.Tree.sum(VectorFusion.Tree.vector(), VectorFusion.Tree.vector()));
+  }
 
-    Code.put(Code.enter);
-    Code.put(2);
-    Code.put(5);
-
-    Code.put(Code.load_n);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.eq);
-    Code.put2(55);
-    Code.put(Code.load_n + 1);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.eq);
-    Code.put2(50);
-    Code.put(Code.load_n);
-    Code.put(Code.arraylength);
-    Code.put(Code.store_2);
-
-    Code.put(Code.load_2);
-    Code.put(Code.load_1);
-    Code.put(Code.arraylength);
-    Code.put(Code.jcc + Code.ne);
-    Code.put2(41);
-    Code.put(Code.load_2);
-    Code.put(Code.newarray);
-    Code.put(1);
-    Code.put(Code.store);
-    Code.put(4);
+  private void putCallOffset(Obj method) {
+    if (generatedMethods.contains(method)) {
+      Code.put2(method.getAdr() - Code.pc + 1);
+    } else {
+      addressesToPatch.computeIfAbsent(method, m -> new ArrayList<>()).add(Code.pc);
+      Code.put2(0);
+    }
+  }
 
-    Code.put(Code.load_2);
-    Code.put(Code.const_n);
-    Code.put(Code.jcc + Code.le);
-    Code.put2(27);
-    Code.put(Code.const_n);
-    Code.put(Code.store_3);
+  private void putClassIdTest(int classId, int op, List<Integer> skipJumps) {
+    Code.put(Code.dup);
+    Code.put(Code.getfield);
+    Code.put2(0);
+    Code.loadConst(classId);
+    Code.put(Code.jcc + op);
+    skipJumps.add(Code.pc);
+    Code.put2(0);
+  }
 
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.load_3);
-    Code.put(Code.load_n);
-    Code.put(Code.load_3);
-    Code.put(Code.aload);
-    Code.put(Code.load_1);
-    Code.put(Code.load_3);
-    Code.put(Code.aload);
-    Code.put(Code.add);
-    Code.put(Code.astore);
-    Code.put(Code.inc);
-    Code.put(3);
-    Code.put(1);
-    Code.put(Code.load_3);
-    Code.put(Code.load_2);
-    Code.put(Code.jcc + Code.ge);
-    Code.put2(6);
-    Code.put(Code.jmp);
-    Code.put2(-19);
+  private void generateDispatchCall(
+      Obj target, int counter, boolean last, List<Integer> jmpAddresses) {
+    if (instrumentDispatch) {
+      var counterObj =
+          new Obj(Obj.Var, "$dispatchCounter", MJTab.intType, firstDispatchCounter + counter, 0);
+      Code.load(counterObj);
+      Code.loadConst(1);
+      Code.put(Code.add);
+      Code.store(counterObj);
+    }
+    Code.put(Code.pop);
+    Code.put(Code.call);
+    putCallOffset(target);
+    if (!last) {
+      Code.put(Code.jmp);
+      jmpAddresses.add(Code.pc);
+      Code.put2(0);
+    }
+  }
 
-    Code.put(Code.load);
-    Code.put(4);
-    Code.put(Code.exit);
-    Code.put(Code.return_);
-    Code.put(Code.trap);
-    Code.put(RuntimeError.VECTOR_OPERATION_ERROR.getCode());
+  /**
+   * Emits a binary decision tree over the given cases (indices of ranges, in increasing order).
+   * The receiver is on the expression stack and has to belong to one of the cases' ranges; it is
+   * consumed by the selected call. All leaves except the last emitted one jump to the end of the
+   * dispatch.
+   *
+   * <p>Objects carry the id of their class in field 0.
+   */
+  private void generateDispatchTree(
+      List<DispatchPlan.Range> ranges,
+      List<Integer> cases,
+      int from,
+      int to,
+      int firstCounter,
+      boolean last,
+      List<Integer> jmpAddresses) {
+    if (to - from == 1) {
+      var dispatchCase = cases.get(from);
+      generateDispatchCall(
+          ranges.get(dispatchCase).getTarget(), firstCounter + dispatchCase, last, jmpAddresses);
+      return;
+    }
+    var middle = (from + to) / 2;
+    List<Integer> skipJumps = new ArrayList<>();
+    putClassIdTest(ranges.get(cases.get(middle)).getFirstClassId(), Code.lt, skipJumps);
+    generateDispatchTree(ranges, cases, middle, to, firstCounter, false, jmpAddresses);
+    Code.fixup(skipJumps.get(0));
+    generateDispatchTree(ranges, cases, from, middle, firstCounter, last, jmpAddresses);
   }
 
-  public void generateMethodInvocationCode(Obj overriddenMethod) {
-    List<Integer> jmpAddresses = new ArrayList<>();
-    int jccAddress;
-    var leafClasses = MJTab.getLeafClasses();
-    List<Obj> filteredLeafClasses = new ArrayList<>();
-    for (var clss : leafClasses) {
-      for (var member : clss.getType().getMembers()) {
-        if (member.getKind() == Obj.Meth) {
-          if (MJUtils.haveSameSignatures(member, overriddenMethod)) {
-            filteredLeafClasses.add(clss);
-          }
+  /**
+   * Tests the hottest ranges of the profile one by one, as long as each of them covers at least
+   * half of the receivers that are left, and removes them from the cases.
+   */
+  private void generateProfiledTests(
+      List<DispatchPlan.Range> ranges,
+      List<Integer> cases,
+      int firstCounter,
+      List<Integer> jmpAddresses) {
+    var remaining = 0L;
+    for (var dispatchCase : cases) {
+      remaining += dispatchProfile.getCount(firstCounter + dispatchCase);
+    }
+    while (cases.size() > 1) {
+      var hottest = 0;
+      for (var i = 1; i < cases.size(); i++) {
+        if (dispatchProfile.getCount(firstCounter + cases.get(i))
+            > dispatchProfile.getCount(firstCounter + cases.get(hottest))) {
+          hottest = i;
         }
       }
+      var count = dispatchProfile.getCount(firstCounter + cases.get(hottest));
+      if (count == 0 || 2 * count < remaining) {
+        return;
+      }
+      int dispatchCase = cases.remove(hottest);
+      var range = ranges.get(dispatchCase);
+      List<Integer> skipJumps = new ArrayList<>();
+      if (range.getFirstClassId() == range.getLastClassId()) {
+        putClassIdTest(range.getFirstClassId(), Code.ne, skipJumps);
+      } else {
+        putClassIdTest(range.getFirstClassId(), Code.lt, skipJumps);
+        putClassIdTest(range.getLastClassId(), Code.gt, skipJumps);
+      }
+      generateDispatchCall(range.getTarget(), firstCounter + dispatchCase, false, jmpAddresses);
+      for (int address : skipJumps) {
+        Code.fixup(address);
+      }
+      remaining -= count;
     }
-    for (var clss : filteredLeafClasses) {
-      Code.put(Code.dup);
-      Code.put(Code.getfield);
-      Code.put2(1);
-      Code.load(new Obj(Obj.Con, "", MJTab.intType, clss.getLevel(), 0));
-      Code.put(Code.jcc + Code.ne);
-      jccAddress = Code.pc;
-      Code.put2(0);
-      Code.put(Code.pop);
+  }
+
+  public void generateMethodInvocationCode(List<DispatchPlan.Range> ranges) {
+    if (ranges.isEmpty()) {
+      throw new IllegalStateException("No dispatch targets");
+    }
+    var firstCounter = dispatchCounterCount;
+    dispatchCounterCount += ranges.size();
+    if (instrumentDispatch) {
+      Code.dataSize += ranges.size();
+    }
+    List<Integer> cases = new ArrayList<>();
+    for (var i = 0; i < ranges.size(); i++) {
+      cases.add(i);
+    }
+    List<Integer> jmpAddresses = new ArrayList<>();
+    if (dispatchProfile != null) {
+      generateProfiledTests(ranges, cases, firstCounter, jmpAddresses);
+    }
+    generateDispatchTree(ranges, cases, 0, cases.size(), firstCounter, true, jmpAddresses);
+    for (int address : jmpAddresses) {
+      Code.fixup(address);
+    }
+  }
+
+  /**
+   * Makes every virtual call site count the receivers of each of its dispatch ranges. The
+   * counters are printed by the entry point when main returns (see {@link
+   * #generateEntryPoint()}) and can be read back with {@link DispatchProfile}.
+   */
+  public void instrumentDispatch() {
+    instrumentDispatch = true;
+    firstDispatchCounter = Code.dataSize;
+  }
+
+  /** Makes virtual call sites with a single possible target call it directly. */
+  public void devirtualizeMonomorphicCalls() {
+    devirtualizeMonomorphicCalls = true;
+  }
+
+  /**
+   * Loads the value of every constant expression instead of computing it, and leaves out the code
+   * of constant conditions and of the branches they never select.
+   */
+  public void foldConstants(ConstantFolder constantFolder) {
+    this.constantFolder = constantFolder;
+  }
+
+  /**
+   * Computes every fused vector expression by a call to a loop generated for its form, instead of
+   * calling a helper method per operation (see {@link VectorFusion}).
+   */
+  public void fuseVectorExpressions(VectorFusion vectorFusion) {
+    this.vectorFusion = vectorFusion;
+  }
+
+  /**
+   * Makes the loops of the vector helper methods and of fused vector expressions compute the given
+   * number of elements per iteration, with a second loop for the elements that are left over.
+   * Must be set before the helper methods are generated.
+   */
+  public void unrollVectorLoops(int unrollFactor) {
+    if (unrollFactor < 1) {
+      throw new IllegalArgumentException("Unknown unroll factor " + unrollFactor);
+    }
+    vectorLoopUnrollFactor = unrollFactor;
+  }
+
+  /**
+   * Moves the code addresses that the code generator keeps (the start of main and of the generated
+   * methods) after the code has been rewritten.
+   */
+  public void relocate(IntUnaryOperator relocation) {
+    mainPc = relocation.applyAsInt(mainPc);
+    for (var method : generatedMethods) {
+      method.setAdr(relocation.applyAsInt(method.getAdr()));
+    }
+  }
+
+  private void startDiscardingCode() {
+    discardedCodeStarts.push(Code.pc);
+  }
+
+  private boolean isDiscardingCode() {
+    return !discardedCodeStarts.isEmpty();
+  }
+
+  /** Rewinds to where discarding has started and returns the number of bytes discarded. */
+  private int stopDiscardingCode() {
+    int start = discardedCodeStarts.pop();
+    for (var jumps : currentBreakJumps) {
+      jumps.removeIf(address -> address >= start);
+    }
+    for (var jumps : currentContinueJumps) {
+      jumps.removeIf(address -> address >= start);
+    }
+    var size = Code.pc - start;
+    Code.pc = start;
+    return size;
+  }
+
+  private Optional<Boolean> getConstantCondition(SyntaxNode statement) {
+    return constantFolder != null ? constantFolder.getConditionValue(statement) : Optional.empty();
+  }
+
+  /**
+   * Loads the value of a folded expression at the outermost node of the expression.
+   *
+   * @return true if the code of the node must not be generated
+   */
+  private boolean putFoldedConstant(SyntaxNode node) {
+    if (constantFolder == null) {
+      return false;
+    }
+    var value = constantFolder.getValue(node);
+    if (value.isEmpty()) {
+      return false;
+    }
+    if (constantFolder.getValue(node.getParent()).isEmpty()) {
+      Code.loadConst(value.getAsInt());
+    }
+    return true;
+  }
+
+  /**
+   * Calls the loop of a fused expression at its root operation; the operands of the expression
+   * are already on the expression stack.
+   *
+   * @return true if the code of the node must not be generated
+   */
+  private boolean putFusedVectorExpression(SyntaxNode node) {
+    if (vectorFusion == null || !vectorFusion.isFused(node)) {
+      return false;
+    }
+    var root = vectorFusion.getRoot(node);
+    if (root.isPresent() && !isDiscardingCode()) {
+      var tree = root.get();
+      var kernel =
+          vectorKernels.computeIfAbsent(
+              tree.getShape(),
+              shape ->
+                  new Obj(
+                      Obj.Meth,
+                      "$vectorKernel" + vectorKernels.size(),
+                      tree.isVector() ? MJTab.INT_ARRAY_TYPE : MJTab.intType,
+                      0,
+                      tree.getOperands().size()));
+      vectorKernelTrees.putIfAbsent(kernel, tree);
       Code.put(Code.call);
-      InheritanceTree.getNode(clss)
-          .flatMap(node -> node.getVMT().getSameSignatureMethod(overriddenMethod))
-          .ifPresent(
-              method -> {
-                var addr = method.getAdr();
-                if (addr != 0) {
-                  Code.put2(addr - Code.pc + 1);
-                } else {
-                  if (addressesToPatch.containsKey(method)) {
-                    var addressesToPatch = this.addressesToPatch.get(method);
-                    addressesToPatch.add(Code.pc);
-                  } else {
-                    List<Integer> addressesToPatch = new ArrayList<>();
-                    addressesToPatch.add(Code.pc);
-                    this.addressesToPatch.put(method, addressesToPatch);
-                  }
-                  Code.put2(0);
-                }
-              });
-      Code.put(Code.jmp);
-      jmpAddresses.add(Code.pc);
-      Code.put2(0);
-      Code.fixup(jccAddress);
+      putCallOffset(kernel);
     }
+    return true;
+  }
 
-    Code.put(Code.getfield);
-    Code.put2(0);
+  private static void loadLocal(int slot) {
+    Code.load(new Obj(Obj.Var, "", MJTab.intType, slot, 1));
+  }
 
-    Code.put(Code.invokevirtual);
-    MJUtils.getCompactClassMethodSignature(overriddenMethod)
-        .ifPresent(
-            methodSignature -> {
-              for (var i = 0; i < methodSignature.length(); i++) {
-                Code.put4(methodSignature.charAt(i));
-              }
-            });
-    Code.put4(-1);
-    for (int address : jmpAddresses) {
+  private static void storeLocal(int slot) {
+    Code.store(new Obj(Obj.Var, "", MJTab.intType, slot, 1));
+  }
+
+  private static void putElement(VectorFusion.Tree tree, List<VectorFusion.Tree> operands, int i) {
+    switch (tree.getKind()) {
+      case VECTOR -> {
+        loadLocal(operands.indexOf(tree));
+        loadLocal(i);
+        Code.put(Code.aload);
+      }
+      case SCALAR -> loadLocal(operands.indexOf(tree));
+      default -> {
+        putElement(tree.getLeft(), operands, i);
+        putElement(tree.getRight(), operands, i);
+        Code.put(tree.getKind() == VectorFusion.Tree.Kind.SUM ? Code.add : Code.mul);
+      }
+    }
+  }
+
+  /**
+   * Appends the iterations of a vector loop to the
+   * <code>rs.etf.pp1.mj.runtime.Code.buf</code> buffer, each of which computes one element and
+   * increments i. A dot product keeps its sum on the expression stack across the iterations.
+   */
+  private static void putIterations(
+      VectorFusion.Tree tree, List<VectorFusion.Tree> operands, int count) {
+    var i = operands.size() + 1;
+    var result = operands.size() + 2;
+    if (!tree.isVector()) {
+      loadLocal(result);
+    }
+    for (var iteration = 0; iteration < count; iteration++) {
+      if (tree.isVector()) {
+        loadLocal(result);
+        loadLocal(i);
+        putElement(tree, operands, i);
+        Code.put(Code.astore);
+      } else {
+        putElement(tree.getLeft(), operands, i);
+        putElement(tree.getRight(), operands, i);
+        Code.put(Code.mul);
+        Code.put(Code.add);
+      }
+      Code.put(Code.inc);
+      Code.put(i);
+      Code.put(1);
+    }
+    if (!tree.isVector()) {
+      storeLocal(result);
+    }
+  }
+
+  /**
+   * Appends a method that computes a vector expression to the
+   * <code>rs.etf.pp1.mj.runtime.Code.buf</code> buffer. It takes the operands of the expression in
+   * the order they are evaluated in; e.g. for {@code a + b * s}:
+   *
+   * <pre>
+   * int[] vectorLoop(int a[], int b[], int s) int la; int i; int result[]; int limit; {
+   *   <b>if</b> (a != null && b != null) {
+   *     la = len(a);
+   *     <b>if</b> (len(b) == la) {
+   *       result = <b>new</b> int[la];
+   *       i = 0;
+   *       limit = la - 3; <font color="green">// unrolled 4 times</font>
+   *       <b>if</b> (i < limit) {
+   *         <b>do</b> {
+   *           result[i] = a[i] + b[i] * s;
+   *           i++;
+   *           <font color="green">// ... 3 more times</font>
+   *         } <b>while</b> (i < limit);
+   *       }
+   *       <b>if</b> (i < la) {
+   *         <b>do</b> {
+   *           result[i] = a[i] + b[i] * s;
+   *           i++;
+   *         } <b>while</b> (i < la);
+   *       }
+   *       <b>return</b> result;
+   *     }
+   *   }
+   * }
+   * </pre>
+   *
+   * A dot product adds up the products of the elements instead, starting from {@code result = 0}.
+   * Without unrolling, there is only the second loop.
+   */
+  private void generateVectorLoop(VectorFusion.Tree tree) {
+    var operands = tree.getOperands();
+    var length = operands.size();
+    var i = length + 1;
+    var result = length + 2;
+    var limit = length + 3;
+
+    Code.put(Code.enter);
+    Code.put(operands.size());
+    Code.put(operands.size() + (vectorLoopUnrollFactor > 1 ? 4 : 3));
+
+    List<Integer> trapJumps = new ArrayList<>();
+    for (var operand = 0; operand < operands.size(); operand++) {
+      if (operands.get(operand).isVector()) {
+        loadLocal(operand);
+        Code.loadConst(0);
+        Code.putFalseJump(Code.ne, 0);
+        trapJumps.add(Code.pc - 2);
+      }
+    }
+    var first = true;
+    for (var operand = 0; operand < operands.size(); operand++) {
+      if (!operands.get(operand).isVector()) {
+        continue;
+      }
+      loadLocal(operand);
+      Code.put(Code.arraylength);
+      if (first) {
+        storeLocal(length);
+        first = false;
+      } else {
+        loadLocal(length);
+        Code.putFalseJump(Code.eq, 0);
+        trapJumps.add(Code.pc - 2);
+      }
+    }
+
+    if (tree.isVector()) {
+      loadLocal(length);
+      Code.put(Code.newarray);
+      Code.put(1);
+    } else {
+      Code.loadConst(0);
+    }
+    storeLocal(result);
+    Code.loadConst(0);
+    storeLocal(i);
+
+    if (vectorLoopUnrollFactor > 1) {
+      unrolledVectorLoopCount++;
+      loadLocal(length);
+      Code.loadConst(vectorLoopUnrollFactor - 1);
+      Code.put(Code.sub);
+      storeLocal(limit);
+      loadLocal(i);
+      loadLocal(limit);
+      Code.putFalseJump(Code.lt, 0);
+      var skipUnrolledLoopJump = Code.pc - 2;
+      var unrolledLoopStart = Code.pc;
+      putIterations(tree, operands, vectorLoopUnrollFactor);
+      loadLocal(i);
+      loadLocal(limit);
+      Code.putFalseJump(Code.ge, unrolledLoopStart);
+      Code.fixup(skipUnrolledLoopJump);
+    }
+
+    loadLocal(i);
+    loadLocal(length);
+    Code.putFalseJump(Code.lt, 0);
+    var skipLoopJump = Code.pc - 2;
+    var loopStart = Code.pc;
+    putIterations(tree, operands, 1);
+    loadLocal(i);
+    loadLocal(length);
+    Code.putFalseJump(Code.ge, loopStart);
+    Code.fixup(skipLoopJump);
+
+    loadLocal(result);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    for (int address : trapJumps) {
       Code.fixup(address);
     }
+    Code.put(Code.trap);
+    Code.put(RuntimeError.VECTOR_OPERATION_ERROR.getCode());
+  }
+
+  /** Orders the type tests of every virtual call site by the receiver counts of the profile. */
+  public void useDispatchProfile(DispatchProfile dispatchProfile) {
+    this.dispatchProfile = dispatchProfile;
+  }
+
+  /**
+   * Returns the address execution starts at: main itself, or a stub that calls main and then
+   * prints the dispatch counters if dispatch is instrumented.
+   */
+  public int generateEntryPoint() {
+    if (!instrumentDispatch) {
+      return mainPc;
+    }
+    var entryPc = Code.pc;
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(0);
+    Code.put(Code.call);
+    Code.put2(mainPc - Code.pc + 1);
+    for (var counter = 0; counter < dispatchCounterCount; counter++) {
+      Code.loadConst('#');
+      Code.loadConst(0);
+      Code.put(Code.bprint);
+      Code.loadConst(counter);
+      Code.loadConst(0);
+      Code.put(Code.print);
+      Code.loadConst(' ');
+      Code.loadConst(0);
+      Code.put(Code.bprint);
+      Code.load(
+          new Obj(Obj.Var, "$dispatchCounter", MJTab.intType, firstDispatchCounter + counter, 0));
+      Code.loadConst(0);
+      Code.put(Code.print);
+      Code.loadConst('\n');
+      Code.loadConst(0);
+      Code.put(Code.bprint);
+    }
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    return entryPc;
   }
 
   private class ThisParameterLoader extends VisitorAdaptor {
@@ -729,6 +1023,18 @@ public class CodeGenerator extends VisitorAdaptor {
     }
   }
 
+  @Override
+  public void visit(Program program) {
+    for (var kernel : vectorKernels.values()) {
+      kernel.setAdr(Code.pc);
+      generatedMethods.add(kernel);
+      for (int addressToPatch : addressesToPatch.getOrDefault(kernel, List.of())) {
+        Code.fixup(addressToPatch);
+      }
+      generateVectorLoop(vectorKernelTrees.get(kernel));
+    }
+  }
+
   @Override
   public void visit(ClassName className) {
     currentClassObj = className.obj;
@@ -742,7 +1048,12 @@ public class CodeGenerator extends VisitorAdaptor {
   @Override
   public void visit(MethodName methodName) {
     var methodNameObj = methodName.obj;
+    if (reachabilityAnalyzer != null && !reachabilityAnalyzer.isReachable(methodNameObj)) {
+      startDiscardingCode();
+      return;
+    }
     methodNameObj.setAdr(Code.pc);
+    generatedMethods.add(methodNameObj);
     if (addressesToPatch.containsKey(methodNameObj)) {
       var addressesToPatch = this.addressesToPatch.get(methodNameObj);
       for (int addressToPatch : addressesToPatch) {
@@ -759,6 +1070,10 @@ public class CodeGenerator extends VisitorAdaptor {
 
   @Override
   public void visit(MethodDecl methodDecl) {
+    if (isDiscardingCode()) {
+      discardedCodeSize += stopDiscardingCode();
+      return;
+    }
     var methodNameObj = methodDecl.getMethodName().obj;
     if (methodNameObj.getType() == Tab.noType) {
       Code.put(Code.exit);
@@ -777,31 +1092,34 @@ public class CodeGenerator extends VisitorAdaptor {
             : ((MethodCallFactor) actParsEnd.getParent()).getDesignator();
     var offset = methodDesignator.obj.getAdr() - Code.pc;
     var thisParameterObj = thisParameterObjs.pop();
+    if (isDiscardingCode()) {
+      // The code is going to be discarded; calls must not leave addresses to patch behind.
+      return;
+    }
+    var thisParameterTypeNode =
+        getDispatchedReceiverTypeNode(methodDesignator.obj, thisParameterObj);
     if (methodDesignator.obj == MJTab.lenMethod) {
       Code.put(Code.arraylength);
-    } else if (!(methodDesignator.obj == MJTab.ordMethod
-        || methodDesignator.obj == MJTab.chrMethod)) {
-      if (!thisParameterObj.equals(Tab.noObj)) {
-        Optional<InheritanceTreeNode> nodeOpt =
-            InheritanceTree.getNode(MJTab.findObjForClass(thisParameterObj.getType()));
-        if (nodeOpt.isPresent()) {
-          var thisParameterTypeNode = nodeOpt.get();
-          if (thisParameterTypeNode.getVMT().containsSameSignatureMethod(methodDesignator.obj)
-              && thisParameterTypeNode.hasChildren()) {
-            methodDesignator.traverseBottomUp(new ThisParameterLoader());
-            generateMethodInvocationCode(methodDesignator.obj);
-          } else {
-            Code.put(Code.call);
-            Code.put2(offset);
-          }
-        } else {
-          Code.put(Code.call);
-          Code.put2(offset);
-        }
-      } else {
+    } else if (thisParameterTypeNode.isPresent()) {
+      var ranges = dispatchPlanner.getRanges(methodDesignator.obj, thisParameterTypeNode.get());
+      virtualCallCount++;
+      if (ranges.isEmpty()) {
+        // No class below the static type is instantiated, so the receiver can only be null.
+        methodDesignator.traverseBottomUp(new ThisParameterLoader());
+        Code.put(Code.getfield);
+        Code.put2(0);
+      } else if (ranges.size() == 1 && devirtualizeMonomorphicCalls) {
+        devirtualizedCallCount++;
         Code.put(Code.call);
-        Code.put2(offset);
+        putCallOffset(ranges.get(0).getTarget());
+      } else {
+        methodDesignator.traverseBottomUp(new ThisParameterLoader());
+        generateMethodInvocationCode(ranges);
       }
+    } else if (!(methodDesignator.obj == MJTab.ordMethod
+        || methodDesignator.obj == MJTab.chrMethod)) {
+      Code.put(Code.call);
+      Code.put2(offset);
     }
   }
 
@@ -941,6 +1259,21 @@ public class CodeGenerator extends VisitorAdaptor {
 
   @Override
   public void visit(ConditionEnd conditionEnd) {
+    var constantCondition = getConstantCondition(conditionEnd.getParent());
+    if (constantCondition.isPresent()) {
+      deadCodeSize += stopDiscardingCode();
+      currentNextCondTermJumps.peek().clear();
+      currentSkipNextCondTermJumps.clear();
+      if (conditionEnd.getParent() instanceof DoWhileStatement) {
+        if (constantCondition.get()) {
+          Code.putJump(0);
+          currentSkipNextCondTermJumps.add(Code.pc - 2);
+        }
+      } else if (!constantCondition.get()) {
+        startDiscardingCode();
+      }
+      return;
+    }
     if (conditionEnd.getParent() instanceof IfThenStatement
         || conditionEnd.getParent() instanceof IfThenElseStatement) {
       for (var address : currentSkipNextCondTermJumps) {
@@ -955,6 +1288,16 @@ public class CodeGenerator extends VisitorAdaptor {
 
   @Override
   public void visit(Else else_) {
+    var constantCondition = getConstantCondition(else_.getParent());
+    if (constantCondition.isPresent()) {
+      currentNextCondTermJumps.pop();
+      if (constantCondition.get()) {
+        startDiscardingCode();
+      } else {
+        deadCodeSize += stopDiscardingCode();
+      }
+      return;
+    }
     Code.putJump(0);
     for (var address : currentNextCondTermJumps.pop()) {
       Code.fixup(address);
@@ -964,6 +1307,10 @@ public class CodeGenerator extends VisitorAdaptor {
 
   @Override
   public void visit(IfThenStatement ifThenStatement) {
+    var constantCondition = getConstantCondition(ifThenStatement);
+    if (constantCondition.isPresent() && !constantCondition.get()) {
+      deadCodeSize += stopDiscardingCode();
+    }
     for (var address : currentNextCondTermJumps.pop()) {
       Code.fixup(address);
     }
@@ -971,6 +1318,13 @@ public class CodeGenerator extends VisitorAdaptor {
 
   @Override
   public void visit(IfThenElseStatement ifThenElseStatement) {
+    var constantCondition = getConstantCondition(ifThenElseStatement);
+    if (constantCondition.isPresent()) {
+      if (constantCondition.get()) {
+        deadCodeSize += stopDiscardingCode();
+      }
+      return;
+    }
     Code.fixup(currentSkipElseJump.pop());
   }
 
@@ -995,6 +1349,9 @@ public class CodeGenerator extends VisitorAdaptor {
       }
     }
     currentNextCondTermJumps.push(new ArrayList<>());
+    if (getConstantCondition(conditionStart.getParent()).isPresent()) {
+      startDiscardingCode();
+    }
   }
 
   @Override
@@ -1114,13 +1471,24 @@ public class CodeGenerator extends VisitorAdaptor {
     Code.load(memberAccessDesignatorStart.getDesignatorStart().obj);
   }
 
+  @Override
+  public void visit(TermExpr termExpr) {
+    putFoldedConstant(termExpr);
+  }
+
   @Override
   public void visit(MinusTermExpr minusTermExpr) {
+    if (putFoldedConstant(minusTermExpr)) {
+      return;
+    }
     Code.put(Code.neg);
   }
 
   @Override
   public void visit(AddopExpr addopExpr) {
+    if (putFoldedConstant(addopExpr) || putFusedVectorExpression(addopExpr)) {
+      return;
+    }
     var exprType = addopExpr.obj.getType();
     var termType = addopExpr.obj.getType();
     if (addopExpr.getAddop() instanceof PlusAddop) {
@@ -1136,8 +1504,16 @@ public class CodeGenerator extends VisitorAdaptor {
     }
   }
 
+  @Override
+  public void visit(FactorTerm factorTerm) {
+    putFoldedConstant(factorTerm);
+  }
+
   @Override
   public void visit(MulopTerm mulopTerm) {
+    if (putFoldedConstant(mulopTerm) || putFusedVectorExpression(mulopTerm)) {
+      return;
+    }
     var mulop = mulopTerm.getMulop();
     var termType = mulopTerm.getTerm().obj.getType();
     var factorType = mulopTerm.getFactor().obj.getType();
@@ -1168,24 +1544,41 @@ public class CodeGenerator extends VisitorAdaptor {
 
   @Override
   public void visit(DesignatorFactor designatorFactor) {
+    if (putFoldedConstant(designatorFactor)) {
+      return;
+    }
     Code.load(designatorFactor.obj);
   }
 
   @Override
   public void visit(IntFactor intFactor) {
+    if (putFoldedConstant(intFactor)) {
+      return;
+    }
     Code.load(intFactor.obj);
   }
 
   @Override
   public void visit(CharFactor charFactor) {
+    if (putFoldedConstant(charFactor)) {
+      return;
+    }
     Code.load(charFactor.obj);
   }
 
   @Override
   public void visit(BoolFactor boolFactor) {
+    if (putFoldedConstant(boolFactor)) {
+      return;
+    }
     Code.load(boolFactor.obj);
   }
 
+  @Override
+  public void visit(DelimitedFactor delimitedFactor) {
+    putFoldedConstant(delimitedFactor);
+  }
+
   @Override
   public void visit(NewScalarFactor newScalarFactor) {
     Code.put(Code.new_);
@@ -1194,18 +1587,11 @@ public class CodeGenerator extends VisitorAdaptor {
       InheritanceTree.getNode(newScalarFactor.obj)
           .ifPresent(
               node -> {
-                if (!node.getVMT().isEmpty()) {
-                  var constObj =
-                      new Obj(Obj.Con, "", Tab.intType, newScalarFactor.getType().obj.getAdr(), 1);
+                if (!node.getDispatchTable().isEmpty()) {
                   Code.put(Code.dup);
-                  Code.load(constObj);
+                  Code.loadConst(node.getClss().getLevel());
                   Code.put(Code.putfield);
                   Code.put2(0);
-                  constObj.setAdr(newScalarFactor.getType().obj.getLevel());
-                  Code.put(Code.dup);
-                  Code.load(constObj);
-                  Code.put(Code.putfield);
-                  Code.put2(1);
                 }
               });
     }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler;
+
+import dev.askov.mjcompiler.ast.Program;
+import dev.askov.mjcompiler.bytecode.CodeModel;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
+import dev.askov.mjcompiler.pass.PassManager;
+import dev.askov.mjcompiler.symboltable.MJTab;
+import dev.askov.mjcompiler.util.MJUtils;
+import dev.askov.mjcompiler.vmt.DispatchTableCreator;
+import java.util.Optional;
+import java.util.function.Consumer;
+import rs.etf.pp1.mj.runtime.Code;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * Generates the code of a program without semantic errors into the
+ * <code>rs.etf.pp1.mj.runtime.Code.buf</code> buffer, running the enabled passes of a {@link
+ * PassManager} around code generation. Passes share their results through this object.
+ *
+ * @author Danijel Askov
+ */
+public class Compilation {
+
+  private final Program program;
+  private final SemanticAnalyzer semanticAnalyzer;
+  private ConstantFolder constantFolder;
+  private VectorFusion vectorFusion;
+  private ReachabilityAnalyzer reachabilityAnalyzer;
+  private CodeGenerator codeGenerator;
+  private CodeModel codeModel;
+  private boolean codeIsDecoded = false;
+
+  public Compilation(Program program, SemanticAnalyzer semanticAnalyzer) {
+    this.program = program;
+    this.semanticAnalyzer = semanticAnalyzer;
+  }
+
+  public Program getProgram() {
+    return program;
+  }
+
+  public Optional<ConstantFolder> getConstantFolder() {
+    return Optional.ofNullable(constantFolder);
+  }
+
+  public void setConstantFolder(ConstantFolder constantFolder) {
+    this.constantFolder = constantFolder;
+  }
+
+  public Optional<VectorFusion> getVectorFusion() {
+    return Optional.ofNullable(vectorFusion);
+  }
+
+  public void setVectorFusion(VectorFusion vectorFusion) {
+    this.vectorFusion = vectorFusion;
+  }
+
+  public Optional<ReachabilityAnalyzer> getReachabilityAnalyzer() {
+    return Optional.ofNullable(reachabilityAnalyzer);
+  }
+
+  /**
+   * Makes code generation skip the methods and dispatch cases that the analysis has found unused.
+   */
+  public void setReachabilityAnalyzer(ReachabilityAnalyzer reachabilityAnalyzer) {
+    this.reachabilityAnalyzer = reachabilityAnalyzer;
+  }
+
+  /** Returns the code generator; only available once code generation has started. */
+  public CodeGenerator getCodeGenerator() {
+    return codeGenerator;
+  }
+
+  /**
+   * Returns the generated code as a {@link CodeModel}, decoding it on first use, or an empty
+   * optional if it can't be decoded. Passes that rewrite the code share this model; it is encoded
+   * back to the buffer once all passes have run.
+   */
+  public Optional<CodeModel> getCodeModel() {
+    if (!codeIsDecoded) {
+      codeModel = CodeModel.decode().orElse(null);
+      codeIsDecoded = true;
+    }
+    return Optional.ofNullable(codeModel);
+  }
+
+  private boolean isUsed(Obj helperMethod, boolean isUsedAnywhere) {
+    return reachabilityAnalyzer != null
+        ? reachabilityAnalyzer.isReachable(helperMethod)
+        : isUsedAnywhere;
+  }
+
+  /**
+   * Generates the code of the program and sets <code>rs.etf.pp1.mj.runtime.Code.mainPc</code>.
+   *
+   * @param configuration applied to the code generator after the passes have configured it
+   */
+  public void generateCode(PassManager passManager, Consumer<CodeGenerator> configuration) {
+    InheritanceTree.ROOT_NODE.accept(new DispatchTableCreator());
+    InheritanceTree.numberClassesInPreOrder();
+
+    passManager.runBeforeCodeGeneration(this);
+
+    // Objects are tagged with the pre-order id of their class, so no static data is needed for
+    // dispatch.
+    Code.dataSize = semanticAnalyzer.getStaticVarsCount();
+
+    codeGenerator = new CodeGenerator(reachabilityAnalyzer);
+    passManager.configure(this, codeGenerator);
+    configuration.accept(codeGenerator);
+
+    if (isUsed(MJTab.printBoolMethod, semanticAnalyzer.printBoolMethodIsUsed()))
+      CodeGenerator.generatePrintBoolMethod();
+    if (isUsed(MJTab.readBoolMethod, semanticAnalyzer.readBoolMethodIsUsed()))
+      CodeGenerator.generateReadBoolMethod();
+    if (isUsed(MJTab.vecTimesVecMethod, semanticAnalyzer.vecTimesVecMethodIsUsed()))
+      codeGenerator.generateVecTimesVecMethod();
+    if (isUsed(MJTab.vecPlusVecMethod, semanticAnalyzer.vecPlusVecMethodIsUsed()))
+      codeGenerator.generateVecPlusVecMethod();
+    if (isUsed(MJTab.vecTimesScalarMethod, semanticAnalyzer.vecTimesScalarMethodIsUsed()))
+      codeGenerator.generateVecTimesScalarMethod();
+    if (isUsed(MJTab.scalarTimesVecMethod, semanticAnalyzer.scalarTimesVectorMethodIsUsed()))
+      codeGenerator.generateScalarTimesVectorMethod();
+
+    MJUtils.traverseBottomUp(program, codeGenerator);
+
+    passManager.runAfterCodeGeneration(this);
+    if (codeModel != null) {
+      codeGenerator.relocate(codeModel.encode());
+    }
+
+    Code.mainPc = codeGenerator.generateEntryPoint();
+  }
+}
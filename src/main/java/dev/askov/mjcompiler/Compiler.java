@@ -22,14 +22,16 @@ package dev.askov.mjcompiler;
 import dev.askov.mjcompiler.ast.Program;
 import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
 import dev.askov.mjcompiler.inheritancetree.visitor.InheritanceTreePrinter;
+import dev.askov.mjcompiler.pass.PassManager;
 import dev.askov.mjcompiler.symboltable.MJTab;
-import dev.askov.mjcompiler.vmt.VMTCodeGenerator;
-import dev.askov.mjcompiler.vmt.VMTCreator;
-import dev.askov.mjcompiler.vmt.VMTStartAddressGenerator;
+import dev.askov.mjcompiler.vmt.DispatchProfile;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rs.etf.pp1.mj.runtime.Code;
@@ -45,16 +47,64 @@ public class Compiler {
     MJTab.dump(LOGGER);
   }
 
+  private static final String USAGE =
+      "Usage: Compiler <source-file> <obj-file> [-O0 | -O1 | -O2] [-f<pass> | -fno-<pass>]..."
+          + " [-profile-generate | -profile-use <profile-file>]";
+
   public static void main(String[] args) throws Exception {
-    if (args.length < 2) {
-      LOGGER.error("Too few arguments. Usage: Compiler <source-file> <obj-file>");
+    List<String> files = new ArrayList<>();
+    var profileGenerate = false;
+    File profileFile = null;
+    var passManager = PassManager.create();
+    for (var i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-O0" -> passManager.setOptimizationLevel(0);
+        case "-O1" -> passManager.setOptimizationLevel(1);
+        case "-O2" -> passManager.setOptimizationLevel(2);
+        case "-profile-generate" -> profileGenerate = true;
+        case "-profile-use" -> {
+          if (i + 1 == args.length) {
+            LOGGER.error("Missing profile file. {}", USAGE);
+            return;
+          }
+          profileFile = new File(args[++i]);
+        }
+        default -> {
+          if (args[i].startsWith("-f")) {
+            var enabled = !args[i].startsWith("-fno-");
+            var passName = args[i].substring(enabled ? 2 : 5);
+            if (!passManager.toggle(passName, enabled)) {
+              LOGGER.error("Unknown pass \"{}\". {}", passName, USAGE);
+              return;
+            }
+          } else {
+            files.add(args[i]);
+          }
+        }
+      }
+    }
+    if (files.size() < 2) {
+      LOGGER.error("Too few arguments. {}", USAGE);
       return;
     }
-    var sourceFile = new File(args[0]);
+    var sourceFile = new File(files.get(0));
     if (!sourceFile.exists()) {
       LOGGER.error("Source file \"{}\" has not been found!", sourceFile.getAbsolutePath());
       return;
     }
+    Consumer<CodeGenerator> configuration = codeGenerator -> {};
+    if (profileGenerate) {
+      configuration = configuration.andThen(CodeGenerator::instrumentDispatch);
+    }
+    if (profileFile != null) {
+      if (!profileFile.exists()) {
+        LOGGER.error("Profile file \"{}\" has not been found!", profileFile.getAbsolutePath());
+        return;
+      }
+      var dispatchProfile = DispatchProfile.read(profileFile.toPath());
+      configuration =
+          configuration.andThen(codeGenerator -> codeGenerator.useDispatchProfile(dispatchProfile));
+    }
     LOGGER.info("Compiling source file \"{}\"...", sourceFile.getAbsolutePath());
     try (var br = new BufferedReader(new FileReader(sourceFile))) {
       var lexer = new Lexer(br);
@@ -66,30 +116,22 @@ public class Compiler {
 
         var program = (Program) symbol.value;
 
-        LOGGER.info("Abstract syntax tree:\n{}", program.toString(""));
+        if (LOGGER.isInfoEnabled()) {
+          LOGGER.info("Abstract syntax tree:\n{}", program.toString(""));
+        }
 
         MJTab.init();
         var semanticAnalyzer = new SemanticAnalyzer();
-        program.traverseBottomUp(semanticAnalyzer);
+        semanticAnalyzer.analyze(program);
 
         dumpSymbolTable();
 
         if (!semanticAnalyzer.semanticErrorDetected()) {
 
-          var vmtCreator = new VMTCreator();
-          InheritanceTree.ROOT_NODE.accept(vmtCreator);
-
-          var vmtStartAddressGenerator =
-              new VMTStartAddressGenerator(semanticAnalyzer.getStaticVarsCount());
-          InheritanceTree.ROOT_NODE.accept(vmtStartAddressGenerator);
-
-          Code.dataSize =
-              semanticAnalyzer.getStaticVarsCount() + vmtStartAddressGenerator.getTotalVMTSize();
-
           LOGGER.info(
               "No semantic errors have been detected in \"{}\"", sourceFile.getAbsolutePath());
 
-          var objFile = new File(args[1]);
+          var objFile = new File(files.get(1));
           LOGGER.info("Generating bytecode file \"{}\"...", objFile.getAbsolutePath());
           if (objFile.exists()) {
             LOGGER.info("Deleting old bytecode file \"{}\"...", objFile.getAbsolutePath());
@@ -100,34 +142,16 @@ public class Compiler {
                   "Old bytecode file \"{}\" has not been deleted.", objFile.getAbsolutePath());
           }
 
-          var codeGenerator = new CodeGenerator();
-
-          if (semanticAnalyzer.printBoolMethodIsUsed()) CodeGenerator.generatePrintBoolMethod();
-          if (semanticAnalyzer.readBoolMethodIsUsed()) CodeGenerator.generateReadBoolMethod();
-          if (semanticAnalyzer.vecTimesVecMethodIsUsed()) CodeGenerator.generateVecTimesVecMethod();
-          if (semanticAnalyzer.vecPlusVecMethodIsUsed()) CodeGenerator.generateVecPlusVecMethod();
-          if (semanticAnalyzer.vecTimesScalarMethodIsUsed())
-            CodeGenerator.generateVecTimesScalarMethod();
-          if (semanticAnalyzer.scalarTimesVectorMethodIsUsed())
-            CodeGenerator.generateScalarTimesVectorMethod();
-
-          program.traverseBottomUp(codeGenerator);
+          new Compilation(program, semanticAnalyzer).generateCode(passManager, configuration);
+          LOGGER.info(
+              "Passes run at -O{}:\n{}",
+              passManager.getOptimizationLevel(),
+              passManager.getReport());
 
           var inheritanceTreeNodePrinter = new InheritanceTreePrinter();
-          InheritanceTree.ROOT_NODE.accept(inheritanceTreeNodePrinter);
-
-          Code.mainPc = Code.pc;
-          Code.put(Code.enter);
-          Code.put(0);
-          Code.put(0);
-
-          var vmtCodeGenerator = new VMTCodeGenerator();
-          InheritanceTree.ROOT_NODE.accept(vmtCodeGenerator);
-
-          Code.put(Code.call);
-          Code.put2(codeGenerator.getMainPc() - Code.pc + 1);
-          Code.put(Code.exit);
-          Code.put(Code.return_);
+          if (LOGGER.isInfoEnabled()) {
+            InheritanceTree.ROOT_NODE.accept(inheritanceTreeNodePrinter);
+          }
 
           Code.write(new FileOutputStream(objFile));
           LOGGER.info("Bytecode file \"{}\" has been generated.", objFile.getAbsolutePath());
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler;
+
+import dev.askov.mjcompiler.ast.AddopExpr;
+import dev.askov.mjcompiler.ast.AndCondTerm;
+import dev.askov.mjcompiler.ast.BoolFactor;
+import dev.askov.mjcompiler.ast.CharFactor;
+import dev.askov.mjcompiler.ast.CorrectCondition;
+import dev.askov.mjcompiler.ast.DelimitedFactor;
+import dev.askov.mjcompiler.ast.DesignatorFactor;
+import dev.askov.mjcompiler.ast.DivMulop;
+import dev.askov.mjcompiler.ast.DoWhileStatement;
+import dev.askov.mjcompiler.ast.EqRelop;
+import dev.askov.mjcompiler.ast.ExprCondFactor;
+import dev.askov.mjcompiler.ast.FactorCondTerm;
+import dev.askov.mjcompiler.ast.FactorTerm;
+import dev.askov.mjcompiler.ast.GeqRelop;
+import dev.askov.mjcompiler.ast.GtRelop;
+import dev.askov.mjcompiler.ast.IfThenElseStatement;
+import dev.askov.mjcompiler.ast.IfThenStatement;
+import dev.askov.mjcompiler.ast.IntFactor;
+import dev.askov.mjcompiler.ast.LeqRelop;
+import dev.askov.mjcompiler.ast.LtRelop;
+import dev.askov.mjcompiler.ast.MethodDecl;
+import dev.askov.mjcompiler.ast.MinusTermExpr;
+import dev.askov.mjcompiler.ast.MulopTerm;
+import dev.askov.mjcompiler.ast.NeqRelop;
+import dev.askov.mjcompiler.ast.OrCondition;
+import dev.askov.mjcompiler.ast.PlusAddop;
+import dev.askov.mjcompiler.ast.Program;
+import dev.askov.mjcompiler.ast.RelOpCondFactor;
+import dev.askov.mjcompiler.ast.Relop;
+import dev.askov.mjcompiler.ast.SyntaxNode;
+import dev.askov.mjcompiler.ast.TermCondition;
+import dev.askov.mjcompiler.ast.TermExpr;
+import dev.askov.mjcompiler.ast.TimesMulop;
+import dev.askov.mjcompiler.ast.VisitorAdaptor;
+import dev.askov.mjcompiler.util.MJUtils;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import rs.etf.pp1.symboltable.Tab;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * Evaluates the expressions and conditions of a program that only depend on literals and {@code
+ * const} symbols. Arithmetic wraps around on overflow and divides with truncation toward zero,
+ * just like the MicroJava VM does; a division or remainder by a constant zero is left to trap at
+ * run time.
+ *
+ * <p>A condition is constant if its value is known without evaluating any operand that might not
+ * be constant, e.g. {@code false && f()}. The statements that a constant condition never selects,
+ * and the condition itself, are dead code.
+ *
+ * @author Danijel Askov
+ */
+public class ConstantFolder extends VisitorAdaptor {
+
+  private final Map<SyntaxNode, Integer> values = new IdentityHashMap<>();
+  private final Map<SyntaxNode, Boolean> conditionValues = new IdentityHashMap<>();
+  private int foldedOperationCount = 0;
+  private int constantConditionCount = 0;
+
+  public static ConstantFolder fold(Program program) {
+    var constantFolder = new ConstantFolder();
+    MJUtils.traverseBottomUp(program, constantFolder);
+    return constantFolder;
+  }
+
+  /** Returns the value of a constant expression, term or factor. */
+  public OptionalInt getValue(SyntaxNode node) {
+    var value = values.get(node);
+    return value != null ? OptionalInt.of(value) : OptionalInt.empty();
+  }
+
+  /** Returns the value of the condition of an if or a do-while statement, if it is constant. */
+  public Optional<Boolean> getConditionValue(SyntaxNode statement) {
+    SyntaxNode condition = null;
+    if (statement instanceof IfThenStatement) {
+      condition = ((IfThenStatement) statement).getErrorProneCondition();
+    } else if (statement instanceof IfThenElseStatement) {
+      condition = ((IfThenElseStatement) statement).getErrorProneCondition();
+    } else if (statement instanceof DoWhileStatement) {
+      condition = ((DoWhileStatement) statement).getCondition();
+    }
+    if (condition instanceof CorrectCondition) {
+      condition = ((CorrectCondition) condition).getCondition();
+    }
+    return Optional.ofNullable(conditionValues.get(condition));
+  }
+
+  /** Returns true if the node is in a branch or a condition that is never executed. */
+  public boolean isInDeadCode(SyntaxNode node) {
+    for (var parent = node.getParent();
+        parent != null && !(parent instanceof MethodDecl);
+        node = parent, parent = parent.getParent()) {
+      var conditionValue = getConditionValue(parent);
+      if (conditionValue.isEmpty()) {
+        continue;
+      }
+      if (parent instanceof IfThenStatement) {
+        var ifThenStatement = (IfThenStatement) parent;
+        if (node == ifThenStatement.getErrorProneCondition()
+            || (node == ifThenStatement.getStatement() && !conditionValue.get())) {
+          return true;
+        }
+      } else if (parent instanceof IfThenElseStatement) {
+        var ifThenElseStatement = (IfThenElseStatement) parent;
+        if (node == ifThenElseStatement.getErrorProneCondition()
+            || (node == ifThenElseStatement.getStatement() && !conditionValue.get())
+            || (node == ifThenElseStatement.getStatement1() && conditionValue.get())) {
+          return true;
+        }
+      } else if (node == ((DoWhileStatement) parent).getCondition()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the number of arithmetic operations that have been evaluated at compile time. */
+  public int getFoldedOperationCount() {
+    return foldedOperationCount;
+  }
+
+  /** Returns the number of if and do-while statements whose condition is constant. */
+  public int getConstantConditionCount() {
+    return constantConditionCount;
+  }
+
+  private void copyValue(SyntaxNode from, SyntaxNode to) {
+    var value = values.get(from);
+    if (value != null) {
+      values.put(to, value);
+    }
+  }
+
+  private void putOperation(SyntaxNode node, int value) {
+    values.put(node, value);
+    foldedOperationCount++;
+  }
+
+  private void visitConstant(SyntaxNode node, Obj obj) {
+    if (obj.getKind() == Obj.Con) {
+      values.put(node, obj.getAdr());
+    }
+  }
+
+  @Override
+  public void visit(IntFactor intFactor) {
+    visitConstant(intFactor, intFactor.obj);
+  }
+
+  @Override
+  public void visit(CharFactor charFactor) {
+    visitConstant(charFactor, charFactor.obj);
+  }
+
+  @Override
+  public void visit(BoolFactor boolFactor) {
+    visitConstant(boolFactor, boolFactor.obj);
+  }
+
+  @Override
+  public void visit(DesignatorFactor designatorFactor) {
+    visitConstant(designatorFactor, designatorFactor.obj);
+  }
+
+  @Override
+  public void visit(DelimitedFactor delimitedFactor) {
+    copyValue(delimitedFactor.getExpr(), delimitedFactor);
+  }
+
+  @Override
+  public void visit(FactorTerm factorTerm) {
+    copyValue(factorTerm.getFactor(), factorTerm);
+  }
+
+  @Override
+  public void visit(TermExpr termExpr) {
+    copyValue(termExpr.getTerm(), termExpr);
+  }
+
+  @Override
+  public void visit(MinusTermExpr minusTermExpr) {
+    var term = values.get(minusTermExpr.getTerm());
+    if (term != null) {
+      putOperation(minusTermExpr, -term);
+    }
+  }
+
+  @Override
+  public void visit(AddopExpr addopExpr) {
+    var expr = values.get(addopExpr.getExpr());
+    var term = values.get(addopExpr.getTerm());
+    if (expr == null || term == null || !addopExpr.obj.getType().equals(Tab.intType)) {
+      return;
+    }
+    putOperation(addopExpr, addopExpr.getAddop() instanceof PlusAddop ? expr + term : expr - term);
+  }
+
+  @Override
+  public void visit(MulopTerm mulopTerm) {
+    var term = values.get(mulopTerm.getTerm());
+    var factor = values.get(mulopTerm.getFactor());
+    if (term == null || factor == null || !mulopTerm.obj.getType().equals(Tab.intType)) {
+      return;
+    }
+    var mulop = mulopTerm.getMulop();
+    if (mulop instanceof TimesMulop) {
+      putOperation(mulopTerm, term * factor);
+    } else if (factor != 0) {
+      putOperation(mulopTerm, mulop instanceof DivMulop ? term / factor : term % factor);
+    }
+  }
+
+  @Override
+  public void visit(ExprCondFactor exprCondFactor) {
+    var expr = values.get(exprCondFactor.getExpr());
+    if (expr != null) {
+      conditionValues.put(exprCondFactor, expr == 1);
+    }
+  }
+
+  private static boolean compare(int left, Relop relop, int right) {
+    if (relop instanceof EqRelop) {
+      return left == right;
+    } else if (relop instanceof NeqRelop) {
+      return left != right;
+    } else if (relop instanceof GtRelop) {
+      return left > right;
+    } else if (relop instanceof GeqRelop) {
+      return left >= right;
+    } else if (relop instanceof LtRelop) {
+      return left < right;
+    } else if (relop instanceof LeqRelop) {
+      return left <= right;
+    }
+    throw new IllegalArgumentException(relop.getClass().getSimpleName());
+  }
+
+  @Override
+  public void visit(RelOpCondFactor relOpCondFactor) {
+    var left = values.get(relOpCondFactor.getExpr());
+    var right = values.get(relOpCondFactor.getExpr1());
+    if (left != null && right != null) {
+      conditionValues.put(
+          relOpCondFactor, compare(left, relOpCondFactor.getRelop(), right));
+    }
+  }
+
+  @Override
+  public void visit(FactorCondTerm factorCondTerm) {
+    var factor = conditionValues.get(factorCondTerm.getCondFactor());
+    if (factor != null) {
+      conditionValues.put(factorCondTerm, factor);
+    }
+  }
+
+  @Override
+  public void visit(AndCondTerm andCondTerm) {
+    var term = conditionValues.get(andCondTerm.getCondTerm());
+    var factor = conditionValues.get(andCondTerm.getCondFactor());
+    if (Boolean.FALSE.equals(term)) {
+      conditionValues.put(andCondTerm, false);
+    } else if (term != null && factor != null) {
+      conditionValues.put(andCondTerm, factor);
+    }
+  }
+
+  @Override
+  public void visit(TermCondition termCondition) {
+    var term = conditionValues.get(termCondition.getCondTerm());
+    if (term != null) {
+      conditionValues.put(termCondition, term);
+    }
+  }
+
+  @Override
+  public void visit(OrCondition orCondition) {
+    var condition = conditionValues.get(orCondition.getCondition());
+    var term = conditionValues.get(orCondition.getCondTerm());
+    if (Boolean.TRUE.equals(condition)) {
+      conditionValues.put(orCondition, true);
+    } else if (condition != null && term != null) {
+      conditionValues.put(orCondition, term);
+    }
+  }
+
+  private void visitConditionalStatement(SyntaxNode statement) {
+    if (getConditionValue(statement).isPresent()) {
+      constantConditionCount++;
+    }
+  }
+
+  @Override
+  public void visit(IfThenStatement ifThenStatement) {
+    visitConditionalStatement(ifThenStatement);
+  }
+
+  @Override
+  public void visit(IfThenElseStatement ifThenElseStatement) {
+    visitConditionalStatement(ifThenElseStatement);
+  }
+
+  @Override
+  public void visit(DoWhileStatement doWhileStatement) {
+    visitConditionalStatement(doWhileStatement);
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler;
+
+import dev.askov.mjcompiler.ast.ActParsEnd;
+import dev.askov.mjcompiler.ast.AddopExpr;
+import dev.askov.mjcompiler.ast.ClassDecl;
+import dev.askov.mjcompiler.ast.ClassName;
+import dev.askov.mjcompiler.ast.IdentDesignator;
+import dev.askov.mjcompiler.ast.MemberAccessDesignator;
+import dev.askov.mjcompiler.ast.MethodCallDesignatorStatement;
+import dev.askov.mjcompiler.ast.MethodCallFactor;
+import dev.askov.mjcompiler.ast.MethodName;
+import dev.askov.mjcompiler.ast.MulopTerm;
+import dev.askov.mjcompiler.ast.NewScalarFactor;
+import dev.askov.mjcompiler.ast.PlusAddop;
+import dev.askov.mjcompiler.ast.PrintExprIntConstStatement;
+import dev.askov.mjcompiler.ast.PrintExprStatement;
+import dev.askov.mjcompiler.ast.Program;
+import dev.askov.mjcompiler.ast.ReadStatement;
+import dev.askov.mjcompiler.ast.SyntaxNode;
+import dev.askov.mjcompiler.ast.TimesMulop;
+import dev.askov.mjcompiler.ast.VisitorAdaptor;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
+import dev.askov.mjcompiler.symboltable.MJTab;
+import dev.askov.mjcompiler.util.MJUtils;
+import dev.askov.mjcompiler.vmt.DispatchTable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeMap;
+import rs.etf.pp1.symboltable.Tab;
+import rs.etf.pp1.symboltable.concepts.Obj;
+import rs.etf.pp1.symboltable.concepts.Struct;
+
+/**
+ * Finds the methods that can be executed when the program runs, starting from main (rapid type
+ * analysis). A call that {@link CodeGenerator} binds statically reaches its method; a call that is
+ * dispatched on the receiver's class reaches the targets of the instantiated classes below the
+ * receiver's static type. Classes are instantiated by {@code new} in reachable methods only.
+ *
+ * <p>Code that a {@link ConstantFolder} has found dead uses nothing, and neither do the operations
+ * of expressions that {@link VectorFusion} computes by a single loop.
+ *
+ * <p>The built-in helper methods (e.g. {@code printBool}) are reachable if a reachable method uses
+ * them, under the same conditions that {@link CodeGenerator} calls them under.
+ *
+ * @author Danijel Askov
+ */
+public class ReachabilityAnalyzer extends VisitorAdaptor {
+
+  private static class VirtualCall {
+
+    private final Obj method;
+    private final InheritanceTreeNode receiverTypeNode;
+
+    private VirtualCall(Obj method, InheritanceTreeNode receiverTypeNode) {
+      this.method = method;
+      this.receiverTypeNode = receiverTypeNode;
+    }
+  }
+
+  private static class MethodUses {
+
+    private final List<Obj> calledMethods = new ArrayList<>();
+    private final List<VirtualCall> virtualCalls = new ArrayList<>();
+    private final List<InheritanceTreeNode> instantiatedClasses = new ArrayList<>();
+  }
+
+  private final Map<Obj, MethodUses> methodUses = new IdentityHashMap<>();
+  private MethodUses currentMethodUses;
+  private Obj currentClassObj = Tab.noObj;
+  private Obj mainMethod;
+  private final Stack<Obj> thisParameterObjs = new Stack<>();
+  private final ConstantFolder constantFolder;
+  private final VectorFusion vectorFusion;
+
+  private final Set<Obj> reachableMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final Deque<Obj> worklist = new ArrayDeque<>();
+  private final TreeMap<Integer, InheritanceTreeNode> instantiatedClasses = new TreeMap<>();
+  private final Map<String, Set<InheritanceTreeNode>> receiverTypeNodes = new HashMap<>();
+
+  /**
+   * Collects the uses of every method of the program and computes what is reachable from main.
+   * Classes have to be numbered in pre-order already.
+   */
+  public static ReachabilityAnalyzer analyze(Program program) {
+    return analyze(program, null, null);
+  }
+
+  /**
+   * Same as {@link #analyze(Program)}, but the code that the given constant folder has found dead
+   * is left out, and so are the helper methods of the operations that the given vector fusion has
+   * fused. Either of them may be null.
+   */
+  public static ReachabilityAnalyzer analyze(
+      Program program, ConstantFolder constantFolder, VectorFusion vectorFusion) {
+    var reachabilityAnalyzer = new ReachabilityAnalyzer(constantFolder, vectorFusion);
+    MJUtils.traverseBottomUp(program, reachabilityAnalyzer);
+    reachabilityAnalyzer.markReachable(reachabilityAnalyzer.mainMethod);
+    reachabilityAnalyzer.propagate();
+    return reachabilityAnalyzer;
+  }
+
+  private ReachabilityAnalyzer(ConstantFolder constantFolder, VectorFusion vectorFusion) {
+    this.constantFolder = constantFolder;
+    this.vectorFusion = vectorFusion;
+  }
+
+  private boolean isInDeadCode(SyntaxNode node) {
+    return constantFolder != null && constantFolder.isInDeadCode(node);
+  }
+
+  private boolean isFused(SyntaxNode node) {
+    return vectorFusion != null && vectorFusion.isFused(node);
+  }
+
+  private void markReachable(Obj method) {
+    if (method != null && reachableMethods.add(method)) {
+      worklist.add(method);
+    }
+  }
+
+  private static boolean isInSubtree(InheritanceTreeNode node, InheritanceTreeNode subtreeRoot) {
+    var classId = node.getClss().getLevel();
+    return subtreeRoot.getClss().getLevel() <= classId
+        && classId <= subtreeRoot.getLastSubtreeClassId();
+  }
+
+  private void markInstantiated(InheritanceTreeNode node) {
+    if (instantiatedClasses.putIfAbsent(node.getClss().getLevel(), node) != null) {
+      return;
+    }
+    for (var method : node.getDispatchTable().getMethods()) {
+      for (var receiverTypeNode :
+          receiverTypeNodes.getOrDefault(DispatchTable.signatureOf(method), Set.of())) {
+        if (isInSubtree(node, receiverTypeNode)) {
+          markReachable(method);
+        }
+      }
+    }
+  }
+
+  private void addVirtualCall(VirtualCall virtualCall) {
+    var receiverTypeNode = virtualCall.receiverTypeNode;
+    if (!receiverTypeNodes
+        .computeIfAbsent(
+            DispatchTable.signatureOf(virtualCall.method), signature -> new HashSet<>())
+        .add(receiverTypeNode)) {
+      return;
+    }
+    for (var node :
+        instantiatedClasses
+            .subMap(
+                receiverTypeNode.getClss().getLevel(),
+                true,
+                receiverTypeNode.getLastSubtreeClassId(),
+                true)
+            .values()) {
+      node.getDispatchTable()
+          .getSameSignatureMethod(virtualCall.method)
+          .ifPresent(this::markReachable);
+    }
+  }
+
+  private void propagate() {
+    while (!worklist.isEmpty()) {
+      var uses = methodUses.get(worklist.poll());
+      if (uses == null) {
+        continue;
+      }
+      uses.calledMethods.forEach(this::markReachable);
+      uses.instantiatedClasses.forEach(this::markInstantiated);
+      uses.virtualCalls.forEach(this::addVirtualCall);
+    }
+  }
+
+  public boolean isReachable(Obj method) {
+    return reachableMethods.contains(method);
+  }
+
+  public boolean isInstantiated(InheritanceTreeNode node) {
+    return instantiatedClasses.get(node.getClss().getLevel()) == node;
+  }
+
+  /** Returns the number of methods declared in the program. */
+  public int getMethodCount() {
+    return methodUses.size();
+  }
+
+  /** Returns the number of methods declared in the program that are reachable. */
+  public int getReachableMethodCount() {
+    var count = 0;
+    for (var method : methodUses.keySet()) {
+      if (reachableMethods.contains(method)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void visit(ClassName className) {
+    currentClassObj = className.obj;
+  }
+
+  @Override
+  public void visit(ClassDecl classDecl) {
+    currentClassObj = Tab.noObj;
+  }
+
+  @Override
+  public void visit(MethodName methodName) {
+    currentMethodUses = new MethodUses();
+    methodUses.put(methodName.obj, currentMethodUses);
+    if (currentClassObj.equals(Tab.noObj) && methodName.obj.getName().equals(MJTab.MAIN)) {
+      mainMethod = methodName.obj;
+    }
+  }
+
+  @Override
+  public void visit(IdentDesignator identDesignator) {
+    if (identDesignator.obj.getKind() == Obj.Meth) {
+      thisParameterObjs.push(
+          currentClassObj.equals(Tab.noObj)
+              ? Tab.noObj
+              : new Obj(Obj.Var, SemanticAnalyzer.THIS, currentClassObj.getType(), 0, 1));
+    }
+  }
+
+  @Override
+  public void visit(MemberAccessDesignator memberAccessDesignator) {
+    if (memberAccessDesignator.obj.getKind() == Obj.Meth) {
+      thisParameterObjs.push(memberAccessDesignator.getDesignatorStart().obj);
+    }
+  }
+
+  @Override
+  public void visit(ActParsEnd actParsEnd) {
+    var method =
+        (actParsEnd.getParent() instanceof MethodCallDesignatorStatement)
+            ? ((MethodCallDesignatorStatement) actParsEnd.getParent()).getDesignator().obj
+            : ((MethodCallFactor) actParsEnd.getParent()).getDesignator().obj;
+    var thisParameterObj = thisParameterObjs.pop();
+    if (isInDeadCode(actParsEnd)) {
+      return;
+    }
+    var receiverTypeNode = CodeGenerator.getDispatchedReceiverTypeNode(method, thisParameterObj);
+    if (receiverTypeNode.isPresent()) {
+      currentMethodUses.virtualCalls.add(new VirtualCall(method, receiverTypeNode.get()));
+    } else {
+      currentMethodUses.calledMethods.add(method);
+    }
+  }
+
+  @Override
+  public void visit(NewScalarFactor newScalarFactor) {
+    if (newScalarFactor.getType().obj.getType().getKind() == Struct.Class
+        && !isInDeadCode(newScalarFactor)) {
+      InheritanceTree.getNode(newScalarFactor.obj)
+          .ifPresent(currentMethodUses.instantiatedClasses::add);
+    }
+  }
+
+  @Override
+  public void visit(ReadStatement readStatement) {
+    var designatorType = readStatement.getDesignator().obj.getType();
+    if (!designatorType.equals(Tab.charType)
+        && !designatorType.equals(Tab.intType)
+        && !isInDeadCode(readStatement)) {
+      currentMethodUses.calledMethods.add(MJTab.readBoolMethod);
+    }
+  }
+
+  private void visitPrint(SyntaxNode printStatement, Struct exprType) {
+    if (!exprType.equals(Tab.charType)
+        && !exprType.equals(Tab.intType)
+        && !isInDeadCode(printStatement)) {
+      currentMethodUses.calledMethods.add(MJTab.printBoolMethod);
+    }
+  }
+
+  @Override
+  public void visit(PrintExprStatement printExprStatement) {
+    visitPrint(printExprStatement, printExprStatement.getExpr().obj.getType());
+  }
+
+  @Override
+  public void visit(PrintExprIntConstStatement printExprIntConstStatement) {
+    visitPrint(printExprIntConstStatement, printExprIntConstStatement.getExpr().obj.getType());
+  }
+
+  @Override
+  public void visit(AddopExpr addopExpr) {
+    if (addopExpr.getAddop() instanceof PlusAddop
+        && addopExpr.obj.getType().equals(MJTab.INT_ARRAY_TYPE)
+        && !isInDeadCode(addopExpr)
+        && !isFused(addopExpr)) {
+      currentMethodUses.calledMethods.add(MJTab.vecPlusVecMethod);
+    }
+  }
+
+  @Override
+  public void visit(MulopTerm mulopTerm) {
+    if (!(mulopTerm.getMulop() instanceof TimesMulop)
+        || isInDeadCode(mulopTerm)
+        || isFused(mulopTerm)) {
+      return;
+    }
+    var termType = mulopTerm.getTerm().obj.getType();
+    var factorType = mulopTerm.getFactor().obj.getType();
+    if (termType.equals(MJTab.INT_ARRAY_TYPE) && factorType.equals(MJTab.INT_ARRAY_TYPE)) {
+      currentMethodUses.calledMethods.add(MJTab.vecTimesVecMethod);
+    } else if (termType.equals(MJTab.INT_ARRAY_TYPE) && factorType.equals(MJTab.intType)) {
+      currentMethodUses.calledMethods.add(MJTab.vecTimesScalarMethod);
+    } else if (termType.equals(MJTab.intType) && factorType.equals(MJTab.INT_ARRAY_TYPE)) {
+      currentMethodUses.calledMethods.add(MJTab.scalarTimesVecMethod);
+    }
+  }
+}
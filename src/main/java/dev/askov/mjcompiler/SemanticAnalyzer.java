@@ -35,6 +35,7 @@ import dev.askov.mjcompiler.ast.Const;
 import dev.askov.mjcompiler.ast.ContinueStatement;
 import dev.askov.mjcompiler.ast.CorrectCondition;
 import dev.askov.mjcompiler.ast.CorrectExpr;
+import dev.askov.mjcompiler.ast.Decl;
 import dev.askov.mjcompiler.ast.DecrDesignatorStatement;
 import dev.askov.mjcompiler.ast.DelimitedFactor;
 import dev.askov.mjcompiler.ast.DesignatorFactor;
@@ -59,6 +60,7 @@ import dev.askov.mjcompiler.ast.MethodBodyStart;
 import dev.askov.mjcompiler.ast.MethodCallDesignatorStatement;
 import dev.askov.mjcompiler.ast.MethodCallFactor;
 import dev.askov.mjcompiler.ast.MethodDecl;
+import dev.askov.mjcompiler.ast.MethodDeclList;
 import dev.askov.mjcompiler.ast.MethodEnd;
 import dev.askov.mjcompiler.ast.MethodName;
 import dev.askov.mjcompiler.ast.MinusTermExpr;
@@ -67,8 +69,11 @@ import dev.askov.mjcompiler.ast.MultipleExprExprList;
 import dev.askov.mjcompiler.ast.NeqRelop;
 import dev.askov.mjcompiler.ast.NewScalarFactor;
 import dev.askov.mjcompiler.ast.NewVectorFactor;
+import dev.askov.mjcompiler.ast.NonEmptyDeclList;
+import dev.askov.mjcompiler.ast.NonEmptyMethodDeclList;
 import dev.askov.mjcompiler.ast.NonEmptyStatementList;
 import dev.askov.mjcompiler.ast.NonVoidFormPars;
+import dev.askov.mjcompiler.ast.NonVoidMethods;
 import dev.askov.mjcompiler.ast.NonVoidReturnType;
 import dev.askov.mjcompiler.ast.NonVoidSuperclass;
 import dev.askov.mjcompiler.ast.OrCondition;
@@ -100,6 +105,7 @@ import dev.askov.mjcompiler.ast.VoidFormPars;
 import dev.askov.mjcompiler.ast.VoidReturnType;
 import dev.askov.mjcompiler.ast.VoidSuperclass;
 import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
+import dev.askov.mjcompiler.loggers.Diagnostics;
 import dev.askov.mjcompiler.loggers.SemanticErrorLogger;
 import dev.askov.mjcompiler.loggers.SemanticErrorLogger.SemanticErrorKind;
 import dev.askov.mjcompiler.loggers.SymbolUsageLogger;
@@ -109,7 +115,16 @@ import dev.askov.mjcompiler.methodsignature.MethodSignature;
 import dev.askov.mjcompiler.methodsignature.MethodSignatureGenerator;
 import dev.askov.mjcompiler.symboltable.MJTab;
 import dev.askov.mjcompiler.util.MJUtils;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Stack;
 import rs.etf.pp1.symboltable.Tab;
 import rs.etf.pp1.symboltable.concepts.Obj;
@@ -118,6 +133,13 @@ import rs.etf.pp1.symboltable.concepts.Struct;
 import rs.etf.pp1.symboltable.structure.SymbolDataStructure;
 
 /**
+ * Checks a program in two phases when it is run by {@link #analyze(Program)}. The declarations,
+ * including the signatures and the locals of the methods, are visited first, in the order they are
+ * written in. The method bodies, which declare nothing, are then checked in parallel, each by an
+ * analyzer of its own. It looks symbols up from the scope of its method instead of the current
+ * scope of the symbol table, and only sees the symbols declared before the body, as if the program
+ * had been visited in a single pass.
+ *
  * @author Danijel Askov
  */
 public class SemanticAnalyzer extends VisitorAdaptor {
@@ -126,27 +148,70 @@ public class SemanticAnalyzer extends VisitorAdaptor {
 
   private final SymbolUsageLogger symbolUsageLogger = new SymbolUsageLogger();
   private final SemanticErrorLogger semanticErrorLogger = new SemanticErrorLogger();
+  private final Diagnostics diagnostics = new Diagnostics();
+
+  /** The events logged while {@link #analyze(Program)} runs, or null if they are logged at once. */
+  private List<DeferredLog> deferredLogs = null;
+
+  public SemanticAnalyzer() {
+    globalMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+    declarationIndices = new IdentityHashMap<>();
+    semanticErrorLogger.setDiagnostics(diagnostics);
+  }
+
+  /** Creates the analyzer of a method body, whose events are logged when they are merged. */
+  private SemanticAnalyzer(SemanticAnalyzer declarationAnalyzer, MethodBody methodBody) {
+    globalMethods = declarationAnalyzer.globalMethods;
+    declarationIndices = declarationAnalyzer.declarationIndices;
+    scope = methodBody.scope();
+    horizon = methodBody.horizon();
+    currentScopeType = methodBody.scopeType();
+    currentClassObj = methodBody.classObj();
+    currentMethodObj = methodBody.methodObj();
+    currentMethodReturnType = methodBody.returnType();
+    voidMethod = methodBody.voidMethod();
+    deferredLogs = new ArrayList<>();
+  }
 
   public boolean semanticErrorDetected() {
     return semanticErrorDetected;
   }
 
+  public Diagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
   private void detectSemanticError(
       Obj symbolObj,
       SyntaxNode syntaxNode,
       SemanticErrorKind semanticErrorKind,
       Object... context) {
     semanticErrorDetected = true;
-    semanticErrorLogger.log(symbolObj, syntaxNode.getLine(), null, semanticErrorKind, context);
+    log(true, symbolObj, syntaxNode.getLine(), semanticErrorKind, context);
   }
 
   private void detectSemanticError() {
     semanticErrorDetected = true;
   }
 
+  private void logSymbolUsage(Obj symbolObj, int line, Object... context) {
+    log(false, symbolObj, line, context);
+  }
+
+  private void log(boolean semanticError, Obj loggedObj, int line, Object... context) {
+    if (deferredLogs != null) {
+      // Symbol usages are only worth keeping until the merge if they are going to be printed.
+      if (!semanticError && !symbolUsageLogger.isEnabled()) {
+        return;
+      }
+      deferredLogs.add(new DeferredLog(semanticError, loggedObj, line, context));
+    } else {
+      (semanticError ? semanticErrorLogger : symbolUsageLogger).log(loggedObj, line, null, context);
+    }
+  }
+
   public static final String MAIN = "main";
   public static final String THIS = "this";
-  private static final String VMT_POINTER = "$vmtPointer";
   private static final String CLASS_ID = "$classId";
 
   private enum ScopeType {
@@ -167,10 +232,35 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   private int formParCounter = 0;
   private boolean returnStatementFound = false;
   private int doWhileStatementCount = 0;
-  private Scope programScope = null;
+  private final Set<Obj> globalMethods;
   private boolean detectErrors = true;
   public final Stack<Obj> thisParameterObjs = new Stack<>();
 
+  /** The position of every symbol inserted into the symbol table among the inserted symbols. */
+  private final Map<Obj, Integer> declarationIndices;
+
+  /** The scope of the checked method body, or null if the symbol table's current one is used. */
+  private Scope scope = null;
+
+  /** The number of symbols declared before the checked method body. */
+  private int horizon = Integer.MAX_VALUE;
+
+  private final List<MethodBody> methodBodies = new ArrayList<>();
+
+  /** What the analyzer of a method body needs to know of the declarations around it. */
+  private record MethodBody(
+      MethodDecl methodDecl,
+      Scope scope,
+      int horizon,
+      ScopeType scopeType,
+      Obj classObj,
+      Obj methodObj,
+      Struct returnType,
+      boolean voidMethod) {}
+
+  /** A semantic error or a symbol usage, to be logged once all method bodies are checked. */
+  private record DeferredLog(boolean semanticError, Obj loggedObj, int line, Object[] context) {}
+
   public int getStaticVarsCount() {
     return staticVarsCount;
   }
@@ -182,6 +272,32 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   private boolean vecTimesScalarMethodIsUsed = false;
   private boolean scalarTimesVectorMethodIsUsed = false;
 
+  private Obj insert(int kind, String name, Struct type) {
+    var obj = MJTab.insert(kind, name, type);
+    if (obj != Tab.noObj) {
+      declarationIndices.putIfAbsent(obj, declarationIndices.size());
+    }
+    return obj;
+  }
+
+  private Scope scope() {
+    return scope != null ? scope : MJTab.currentScope;
+  }
+
+  private boolean isVisible(Obj obj) {
+    var declarationIndex = declarationIndices.get(obj);
+    return declarationIndex == null || declarationIndex < horizon;
+  }
+
+  /** Returns null if the symbol is not in the table or is declared after the checked body. */
+  private Obj searchVisible(SymbolDataStructure symbols, String identName) {
+    if (symbols == null) {
+      return null;
+    }
+    var result = symbols.searchKey(identName);
+    return (result != null && isVisible(result)) ? result : null;
+  }
+
   private Obj findNearestDeclaration(String identName, boolean skipCurrentScope) {
     var result = Tab.noObj;
 
@@ -196,7 +312,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
         var superclass = currentClassObj.getType().getElemType();
         Obj foundMethod;
         while (superclass != null) {
-          foundMethod = superclass.getMembersTable().searchKey(identName);
+          foundMethod = searchVisible(superclass.getMembersTable(), identName);
           if (foundMethod != null) {
             result = foundMethod;
             break;
@@ -217,7 +333,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
 
     SymbolDataStructure targetSymbolDataStructure;
     if (currentClassObj.getType() == instanceObj.getType()) {
-      targetSymbolDataStructure = MJTab.currentScope.getOuter().getLocals();
+      targetSymbolDataStructure = scope().getOuter().getLocals();
     } else {
       targetSymbolDataStructure = instanceObj.getType().getMembersTable();
     }
@@ -225,7 +341,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var superclass = instanceObj.getType();
     Obj foundMethod;
     while (targetSymbolDataStructure != null) {
-      foundMethod = targetSymbolDataStructure.searchKey(identName);
+      foundMethod = searchVisible(targetSymbolDataStructure, identName);
       if (foundMethod != null) {
         result = foundMethod;
         break;
@@ -241,7 +357,8 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     if (clss != null && clss.getType().getKind() == Struct.Class) {
       var currentClass = clss.getType().getElemType();
       while (currentClass != null) {
-        var method = currentClass.getMembersTable().searchKey(classMethodSignature.getMethodName());
+        var method =
+            searchVisible(currentClass.getMembersTable(), classMethodSignature.getMethodName());
         if (method != null && method != Tab.noObj && method.getKind() == Obj.Meth) {
           if (new ClassMethodSignature(method, MJTab.noType).isInvokableBy(classMethodSignature)) {
             return method;
@@ -259,24 +376,27 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     while (clss != null) {
       var overriddenMethod =
           clss.getMembersTable().searchKey(methodDecl.getMethodName().obj.getName());
-      if (MJUtils.haveSameSignatures(overridingMethod, overriddenMethod)
-          && !MJUtils.returnTypesAssignmentCompatible(overridingMethod, overriddenMethod)) {
-        detectSemanticError(
-            null,
-            methodDecl,
-            SemanticErrorKind.INCOMPATIBLE_RET_TYPE,
-            new ClassMethodSignature(overriddenMethod, clss));
+      if (MJUtils.haveSameSignatures(overridingMethod, overriddenMethod)) {
+        if (!MJUtils.returnTypesAssignmentCompatible(overridingMethod, overriddenMethod)) {
+          detectSemanticError(
+              null,
+              methodDecl,
+              SemanticErrorKind.INCOMPATIBLE_RET_TYPE,
+              new ClassMethodSignature(overriddenMethod, clss));
+        }
+        // The nearest overridden method has already been checked against the ones above it.
+        break;
       }
       clss = clss.getElemType();
     }
   }
 
   private Obj findInCurrentOrSomeOuterScope(String identName) {
-    return MJTab.find(identName);
+    return findInScopeOrSomeOuterScope(scope(), identName);
   }
 
   private Obj findInCurrentScope(String identName) {
-    var result = MJTab.currentScope.findSymbol(identName);
+    var result = searchVisible(scope().getLocals(), identName);
     if (result == null) {
       result = Tab.noObj;
     }
@@ -284,7 +404,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   }
 
   private Obj findInOuterScope(String identName) {
-    var result = MJTab.currentScope.getOuter().findSymbol(identName);
+    var result = searchVisible(scope().getOuter().getLocals(), identName);
     if (result == null) {
       result = Tab.noObj;
     }
@@ -292,25 +412,140 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   }
 
   private Obj findInSomeOuterScope(String identName) {
+    return findInScopeOrSomeOuterScope(scope().getOuter(), identName);
+  }
+
+  private Obj findInScopeOrSomeOuterScope(Scope innermostScope, String identName) {
     Obj resultObj = null;
-    for (var s = MJTab.currentScope.getOuter(); s != null; s = s.getOuter()) {
-      if (s.getLocals() != null) {
-        resultObj = s.getLocals().searchKey(identName);
-        if (resultObj != null) {
-          break;
-        }
+    for (var s = innermostScope; s != null; s = s.getOuter()) {
+      resultObj = searchVisible(s.getLocals(), identName);
+      if (resultObj != null) {
+        break;
       }
     }
     return (resultObj != null) ? resultObj : Tab.noObj;
   }
 
-  private boolean isGlobalMethod(Obj method) {
-    return programScope.getLocals().symbols().contains(method)
+  public boolean isGlobalMethod(Obj method) {
+    return globalMethods.contains(method)
         || method == MJTab.chrMethod
         || method == MJTab.lenMethod
         || method == MJTab.ordMethod;
   }
 
+  /**
+   * Analyzes the program, checking the method bodies on the common fork-join pool. The errors of
+   * both phases are logged and recorded afterwards, in the order of their lines, and so are the
+   * symbol usages if they are logged at all.
+   */
+  public void analyze(Program program) {
+    deferredLogs = new ArrayList<>();
+    visitDeclarations(program);
+
+    var bodyAnalyzers = methodBodies.parallelStream().map(this::checkMethodBody).toList();
+    methodBodies.clear();
+
+    for (var bodyAnalyzer : bodyAnalyzers) {
+      semanticErrorDetected |= bodyAnalyzer.semanticErrorDetected;
+      printBoolMethodIsUsed |= bodyAnalyzer.printBoolMethodIsUsed;
+      readBoolMethodIsUsed |= bodyAnalyzer.readBoolMethodIsUsed;
+      vecTimesVecMethodIsUsed |= bodyAnalyzer.vecTimesVecMethodIsUsed;
+      vecPlusVecMethodIsUsed |= bodyAnalyzer.vecPlusVecMethodIsUsed;
+      vecTimesScalarMethodIsUsed |= bodyAnalyzer.vecTimesScalarMethodIsUsed;
+      scalarTimesVectorMethodIsUsed |= bodyAnalyzer.scalarTimesVectorMethodIsUsed;
+      deferredLogs.addAll(bodyAnalyzer.deferredLogs);
+    }
+    var orderedLogs = deferredLogs;
+    deferredLogs = null;
+    // The sort is stable, so the events of a line stay in the order they were logged in.
+    orderedLogs.sort(Comparator.comparingInt(DeferredLog::line));
+    for (var deferredLog : orderedLogs) {
+      log(
+          deferredLog.semanticError(),
+          deferredLog.loggedObj(),
+          deferredLog.line(),
+          deferredLog.context());
+    }
+  }
+
+  /**
+   * Visits the program as {@link Program#traverseBottomUp} does, but walks the lists of
+   * declarations with loops and skips the method bodies.
+   */
+  private void visitDeclarations(Program program) {
+    program.getProgramName().traverseBottomUp(this);
+    Deque<NonEmptyDeclList> declLists = new ArrayDeque<>();
+    var declList = program.getDeclList();
+    while (declList instanceof NonEmptyDeclList nonEmptyDeclList) {
+      declLists.push(nonEmptyDeclList);
+      declList = nonEmptyDeclList.getDeclList();
+    }
+    declList.traverseBottomUp(this);
+    while (!declLists.isEmpty()) {
+      var nonEmptyDeclList = declLists.pop();
+      visitDeclarations(nonEmptyDeclList.getDecl());
+      nonEmptyDeclList.accept(this);
+    }
+    visitDeclarations(program.getMethodDeclList());
+    program.getProgramEnd().traverseBottomUp(this);
+    program.accept(this);
+  }
+
+  private void visitDeclarations(Decl decl) {
+    if (!(decl instanceof ClassDecl classDecl)) {
+      decl.traverseBottomUp(this);
+      return;
+    }
+    classDecl.getClassName().traverseBottomUp(this);
+    classDecl.getErrorProneSuperclass().traverseBottomUp(this);
+    classDecl.getFieldDeclList().traverseBottomUp(this);
+    if (classDecl.getMethods() instanceof NonVoidMethods nonVoidMethods) {
+      visitDeclarations(nonVoidMethods.getMethodDeclList());
+    }
+    classDecl.getMethods().accept(this);
+    classDecl.accept(this);
+  }
+
+  private void visitDeclarations(MethodDeclList methodDeclList) {
+    Deque<NonEmptyMethodDeclList> methodDeclLists = new ArrayDeque<>();
+    while (methodDeclList instanceof NonEmptyMethodDeclList nonEmptyMethodDeclList) {
+      methodDeclLists.push(nonEmptyMethodDeclList);
+      methodDeclList = nonEmptyMethodDeclList.getMethodDeclList();
+    }
+    methodDeclList.traverseBottomUp(this);
+    while (!methodDeclLists.isEmpty()) {
+      var nonEmptyMethodDeclList = methodDeclLists.pop();
+      visitDeclarations(nonEmptyMethodDeclList.getMethodDecl());
+      nonEmptyMethodDeclList.accept(this);
+    }
+  }
+
+  private void visitDeclarations(MethodDecl methodDecl) {
+    methodDecl.getReturnType().traverseBottomUp(this);
+    methodDecl.getMethodName().traverseBottomUp(this);
+    methodDecl.getFormPars().traverseBottomUp(this);
+    methodDecl.getLocalVarDeclList().traverseBottomUp(this);
+    methodDecl.getMethodBodyStart().traverseBottomUp(this);
+    methodBodies.add(
+        new MethodBody(
+            methodDecl,
+            MJTab.currentScope,
+            declarationIndices.size(),
+            currentScopeType,
+            currentClassObj,
+            currentMethodObj,
+            currentMethodReturnType,
+            voidMethod));
+    methodDecl.accept(this);
+  }
+
+  private SemanticAnalyzer checkMethodBody(MethodBody methodBody) {
+    var bodyAnalyzer = new SemanticAnalyzer(this, methodBody);
+    methodBody.methodDecl().getStatementList().traverseBottomUp(bodyAnalyzer);
+    methodBody.methodDecl().getMethodEnd().traverseBottomUp(bodyAnalyzer);
+    return bodyAnalyzer;
+  }
+
   @Override
   public void visit(ProgramName programName) {
     var programIdent = programName.getIdent();
@@ -318,14 +553,13 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var progObj = findInCurrentScope(programIdent);
 
     if (progObj == Tab.noObj) {
-      programName.obj = MJTab.insert(Obj.Prog, programIdent, MJTab.noType);
+      programName.obj = insert(Obj.Prog, programIdent, MJTab.noType);
     } else {
       programName.obj = new Obj(Obj.Prog, programIdent, MJTab.noType);
       detectSemanticError(programName.obj, programName, SemanticErrorKind.INV_PROG_NAME);
     }
 
     MJTab.openScope();
-    programScope = MJTab.currentScope;
     currentScopeType = ScopeType.PROGRAM;
   }
 
@@ -393,7 +627,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var constantObj = findInCurrentScope(constantIdent);
 
     if (constantObj == Tab.noObj) {
-      constantObj = MJTab.insert(Obj.Con, constant.getIdent(), currentType);
+      constantObj = insert(Obj.Con, constant.getIdent(), currentType);
       var initializerType = constant.getLiteral().obj.getType();
       if (initializerType.equals(currentType)) {
         constantObj.setAdr(constant.getLiteral().obj.getAdr());
@@ -424,7 +658,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var varObj = findInCurrentScope(varIdent);
 
     if (varObj == Tab.noObj) {
-      MJTab.insert(Obj.Var, varIdent, currentType);
+      insert(Obj.Var, varIdent, currentType);
     } else {
       detectSemanticError(varObj, scalarGlobalVar, SemanticErrorKind.DUP_GLOBAL_DECL);
     }
@@ -437,7 +671,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
 
     if (fieldObj == Tab.noObj) {
       currentClassObj.setAdr(currentClassObj.getAdr() + 1);
-      MJTab.insert(Obj.Fld, fieldIdent, currentType).setAdr(currentClassObj.getAdr());
+      insert(Obj.Fld, fieldIdent, currentType).setAdr(currentClassObj.getAdr());
     } else {
       detectSemanticError(fieldObj, scalarField, SemanticErrorKind.DUP_MEMBER, currentClassObj);
     }
@@ -449,7 +683,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var localVarObj = findInCurrentScope(varIdent);
 
     if (localVarObj == Tab.noObj) {
-      MJTab.insert(Obj.Var, varIdent, currentType);
+      insert(Obj.Var, varIdent, currentType);
     } else {
       detectSemanticError(localVarObj, scalarLocalVar, SemanticErrorKind.DUP_LOCAL_VAR);
     }
@@ -461,7 +695,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var varObj = findInCurrentScope(varIdent);
 
     if (varObj == Tab.noObj) {
-      MJTab.insert(Obj.Var, varIdent, new Struct(Struct.Array, currentType));
+      insert(Obj.Var, varIdent, new Struct(Struct.Array, currentType));
     } else {
       detectSemanticError(varObj, vectorGlobalVar, SemanticErrorKind.DUP_GLOBAL_DECL);
     }
@@ -474,7 +708,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
 
     if (fieldObj == Tab.noObj) {
       currentClassObj.setAdr(currentClassObj.getAdr() + 1);
-      MJTab.insert(Obj.Fld, fieldIdent, new Struct(Struct.Array, currentType))
+      insert(Obj.Fld, fieldIdent, new Struct(Struct.Array, currentType))
           .setAdr(currentClassObj.getAdr());
     } else {
       detectSemanticError(fieldObj, vectorField, SemanticErrorKind.DUP_MEMBER);
@@ -487,7 +721,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var varObj = findInCurrentScope(varIdent);
 
     if (varObj == Tab.noObj) {
-      MJTab.insert(Obj.Var, varIdent, new Struct(Struct.Array, currentType));
+      insert(Obj.Var, varIdent, new Struct(Struct.Array, currentType));
     } else {
       detectSemanticError(varObj, vectorLocalVar, SemanticErrorKind.DUP_LOCAL_VAR);
     }
@@ -501,7 +735,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
 
     if (classObj == Tab.noObj) {
       className.obj =
-          currentClassObj = MJTab.insert(Obj.Type, className.getIdent(), new Struct(Struct.Class));
+          currentClassObj = insert(Obj.Type, className.getIdent(), new Struct(Struct.Class));
       currentClassObj.setLevel(MJTab.nextClassId());
     } else {
       className.obj =
@@ -532,9 +766,8 @@ public class SemanticAnalyzer extends VisitorAdaptor {
 
   @Override
   public void visit(VoidSuperclass voidSuperclass) {
-    MJTab.insert(Obj.Fld, VMT_POINTER, MJTab.intType);
-    MJTab.insert(Obj.Fld, CLASS_ID, MJTab.intType);
-    currentClassObj.setAdr(1);
+    insert(Obj.Fld, CLASS_ID, MJTab.intType);
+    currentClassObj.setAdr(0);
     InheritanceTree.addNodeForClass(currentClassObj);
   }
 
@@ -551,7 +784,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   @Override
   public void visit(VoidFormPars voidFormPars) {
     if (formParCounter == 0 && currentScopeType == ScopeType.CLASS_METHOD) {
-      MJTab.insert(Obj.Var, THIS, currentClassObj.getType());
+      insert(Obj.Var, THIS, currentClassObj.getType());
       formParCounter++;
     }
     currentMethodObj.setLevel(formParCounter);
@@ -565,7 +798,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   @Override
   public void visit(ScalarFormPar scalarFormPar) {
     if (formParCounter == 0 && currentScopeType == ScopeType.CLASS_METHOD) {
-      MJTab.insert(Obj.Var, THIS, currentClassObj.getType());
+      insert(Obj.Var, THIS, currentClassObj.getType());
       formParCounter++;
     }
 
@@ -574,7 +807,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var formParObj = findInCurrentScope(scalarFormParIdent);
 
     if (formParObj == Tab.noObj) {
-      formParObj = MJTab.insert(Obj.Var, scalarFormParIdent, scalarFormPar.getType().obj.getType());
+      formParObj = insert(Obj.Var, scalarFormParIdent, scalarFormPar.getType().obj.getType());
       formParObj.setFpPos(formParCounter++);
     } else {
       detectSemanticError(formParObj, scalarFormPar, SemanticErrorKind.DUP_PAR);
@@ -584,7 +817,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   @Override
   public void visit(VectorFormPar vectorFormPar) {
     if (formParCounter == 0 && currentScopeType == ScopeType.CLASS_METHOD) {
-      MJTab.insert(Obj.Var, THIS, currentClassObj.getType());
+      insert(Obj.Var, THIS, currentClassObj.getType());
       formParCounter++;
     }
 
@@ -594,7 +827,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
 
     if (formParObj == Tab.noObj) {
       formParObj =
-          MJTab.insert(
+          insert(
               Obj.Var,
               vectorFormParIdent,
               new Struct(Struct.Array, vectorFormPar.getType().obj.getType()));
@@ -620,7 +853,10 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     var methodObj = findInCurrentScope(methodIdent);
 
     if (methodObj == Tab.noObj) {
-      methodName.obj = MJTab.insert(Obj.Meth, methodIdent, currentMethodReturnType);
+      methodName.obj = insert(Obj.Meth, methodIdent, currentMethodReturnType);
+      if (currentScopeType == ScopeType.GLOBAL_METHOD) {
+        globalMethods.add(methodName.obj);
+      }
     } else {
       if (currentScopeType == ScopeType.CLASS_METHOD) {
         detectSemanticError(methodObj, methodName, SemanticErrorKind.DUP_MEMBER, currentClassObj);
@@ -1248,7 +1484,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
   public void visit(NewScalarFactor newScalarFactor) {
     newScalarFactor.obj = newScalarFactor.getType().obj;
     if (newScalarFactor.obj.getType().getKind() == Struct.Class) {
-      symbolUsageLogger.log(newScalarFactor.obj, newScalarFactor.getLine(), null);
+      logSymbolUsage(newScalarFactor.obj, newScalarFactor.getLine());
     }
   }
 
@@ -1293,9 +1529,9 @@ public class SemanticAnalyzer extends VisitorAdaptor {
       } else {
         detectSemanticError();
       }
-      symbolUsageLogger.log(identObj, identDesignator.getLine(), null, currentMethodObj);
+      logSymbolUsage(identObj, identDesignator.getLine(), currentMethodObj);
     } else {
-      symbolUsageLogger.log(identObj, identDesignator.getLine(), null, currentMethodObj);
+      logSymbolUsage(identObj, identDesignator.getLine(), currentMethodObj);
     }
 
     identDesignator.obj = identObj;
@@ -1332,7 +1568,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
               "",
               array.getType().getElemType() != null ? array.getType().getElemType() : MJTab.noType);
     }
-    symbolUsageLogger.log(array, arrayElemAccessDesignator.getLine(), null, array);
+    logSymbolUsage(array, arrayElemAccessDesignator.getLine(), array);
   }
 
   @Override
@@ -1356,12 +1592,12 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     } else {
       memberAccessDesignatorObj = findNearestDeclaration(memberName, designatorStartObj);
       if (memberAccessDesignatorObj != Tab.noObj) {
-        symbolUsageLogger.log(memberAccessDesignatorObj, memberAccessDesignator.getLine(), null);
+        logSymbolUsage(memberAccessDesignatorObj, memberAccessDesignator.getLine());
       } else {
         memberAccessDesignatorObj = new Obj(Obj.NO_VALUE, memberName, MJTab.noType);
         detectSemanticError(
             memberAccessDesignatorObj, memberAccessDesignator, SemanticErrorKind.UNRESOLVED_MEMBER);
-        symbolUsageLogger.log(memberAccessDesignatorObj, memberAccessDesignator.getLine(), null);
+        logSymbolUsage(memberAccessDesignatorObj, memberAccessDesignator.getLine());
       }
     }
 
@@ -1387,9 +1623,9 @@ public class SemanticAnalyzer extends VisitorAdaptor {
         || identObj.getKind() == Obj.Prog) {
       identObj = new Obj(Obj.NO_VALUE, identDesignatorStartIdent, MJTab.noType);
       detectSemanticError(identObj, identDesignatorStart, SemanticErrorKind.UNRESOLVED_VARIABLE);
-      symbolUsageLogger.log(identObj, identDesignatorStart.getLine(), null, currentMethodObj);
+      logSymbolUsage(identObj, identDesignatorStart.getLine(), currentMethodObj);
     } else {
-      symbolUsageLogger.log(identObj, identDesignatorStart.getLine(), null, currentMethodObj);
+      logSymbolUsage(identObj, identDesignatorStart.getLine(), currentMethodObj);
     }
 
     identDesignatorStart.obj = identObj;
@@ -1425,7 +1661,7 @@ public class SemanticAnalyzer extends VisitorAdaptor {
               "",
               array.getType().getElemType() != null ? array.getType().getElemType() : MJTab.noType);
     }
-    symbolUsageLogger.log(array, arrayElemAccessDesignatorStart.getLine(), null, array);
+    logSymbolUsage(array, arrayElemAccessDesignatorStart.getLine(), array);
   }
 
   @Override
@@ -1449,16 +1685,14 @@ public class SemanticAnalyzer extends VisitorAdaptor {
     } else {
       memberAccessDesignatorStartObj = findNearestDeclaration(memberName, designatorStartObj);
       if (memberAccessDesignatorStartObj != MJTab.noObj) {
-        symbolUsageLogger.log(
-            memberAccessDesignatorStartObj, memberAccessDesignatorStart.getLine(), null);
+        logSymbolUsage(memberAccessDesignatorStartObj, memberAccessDesignatorStart.getLine());
       } else {
         memberAccessDesignatorStartObj = new Obj(Obj.NO_VALUE, memberName, MJTab.noType);
         detectSemanticError(
             memberAccessDesignatorStartObj,
             memberAccessDesignatorStart,
             SemanticErrorKind.UNRESOLVED_MEMBER);
-        symbolUsageLogger.log(
-            memberAccessDesignatorStartObj, memberAccessDesignatorStart.getLine(), null);
+        logSymbolUsage(memberAccessDesignatorStartObj, memberAccessDesignatorStart.getLine());
       }
     }
 
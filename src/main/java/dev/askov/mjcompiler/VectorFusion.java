@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler;
+
+import dev.askov.mjcompiler.ast.AddopExpr;
+import dev.askov.mjcompiler.ast.DelimitedFactor;
+import dev.askov.mjcompiler.ast.DesignatorFactor;
+import dev.askov.mjcompiler.ast.FactorTerm;
+import dev.askov.mjcompiler.ast.IntFactor;
+import dev.askov.mjcompiler.ast.MethodCallFactor;
+import dev.askov.mjcompiler.ast.MinusTermExpr;
+import dev.askov.mjcompiler.ast.MulopTerm;
+import dev.askov.mjcompiler.ast.NewScalarFactor;
+import dev.askov.mjcompiler.ast.NewVectorFactor;
+import dev.askov.mjcompiler.ast.PlusAddop;
+import dev.askov.mjcompiler.ast.Program;
+import dev.askov.mjcompiler.ast.SyntaxNode;
+import dev.askov.mjcompiler.ast.TermExpr;
+import dev.askov.mjcompiler.ast.TimesMulop;
+import dev.askov.mjcompiler.ast.VisitorAdaptor;
+import dev.askov.mjcompiler.symboltable.MJTab;
+import dev.askov.mjcompiler.util.MJUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * Finds the vector expressions of a program that can be computed by a single loop instead of a
+ * call to a helper method (e.g. {@code vecPlusVec}) per operation, each of which allocates an
+ * intermediate array. A fused expression is a tree of at least two vector operations: sums of
+ * vectors, products of a vector and a scalar and, at the root only, a dot product.
+ *
+ * <p>The operands of a fused expression are still evaluated by the code of the expression, in the
+ * same order, and passed to the loop as arguments. Only operands without side effects are fused:
+ * variables, fields and array elements, and scalars computed from those, literals and constants by
+ * addition, subtraction and multiplication. The loop checks its vector arguments before it starts,
+ * so a null vector or vectors of different lengths trap after all operands have been evaluated
+ * rather than after some of them.
+ *
+ * @author Danijel Askov
+ */
+public class VectorFusion extends VisitorAdaptor {
+
+  /** An operation or an operand of a fused expression. */
+  static class Tree {
+
+    enum Kind {
+      VECTOR,
+      SCALAR,
+      SUM,
+      PRODUCT,
+      DOT_PRODUCT
+    }
+
+    private final Kind kind;
+    private final Tree left;
+    private final Tree right;
+    private final SyntaxNode node;
+    private boolean isOperand = false;
+
+    private Tree(Kind kind, Tree left, Tree right, SyntaxNode node) {
+      this.kind = kind;
+      this.left = left;
+      this.right = right;
+      this.node = node;
+    }
+
+    static Tree vector() {
+      return new Tree(Kind.VECTOR, null, null, null);
+    }
+
+    static Tree scalar() {
+      return new Tree(Kind.SCALAR, null, null, null);
+    }
+
+    static Tree sum(Tree left, Tree right) {
+      return new Tree(Kind.SUM, left, right, null);
+    }
+
+    static Tree product(Tree left, Tree right) {
+      return new Tree(Kind.PRODUCT, left, right, null);
+    }
+
+    static Tree dotProduct(Tree left, Tree right) {
+      return new Tree(Kind.DOT_PRODUCT, left, right, null);
+    }
+
+    Kind getKind() {
+      return kind;
+    }
+
+    Tree getLeft() {
+      return left;
+    }
+
+    Tree getRight() {
+      return right;
+    }
+
+    boolean isOperation() {
+      return left != null;
+    }
+
+    boolean isVector() {
+      return kind != Kind.SCALAR && kind != Kind.DOT_PRODUCT;
+    }
+
+    int getOperationCount() {
+      return isOperation() ? 1 + left.getOperationCount() + right.getOperationCount() : 0;
+    }
+
+    /** Returns the operands in the order they are evaluated in. */
+    List<Tree> getOperands() {
+      List<Tree> operands = new ArrayList<>();
+      collectOperands(operands);
+      return operands;
+    }
+
+    private void collectOperands(List<Tree> operands) {
+      if (isOperation()) {
+        left.collectOperands(operands);
+        right.collectOperands(operands);
+      } else {
+        operands.add(this);
+      }
+    }
+
+    /** Returns a description of the tree that fused expressions of the same form share. */
+    String getShape() {
+      return switch (kind) {
+        case VECTOR -> "v";
+        case SCALAR -> "s";
+        case SUM -> "(" + left.getShape() + "+" + right.getShape() + ")";
+        case PRODUCT -> "(" + left.getShape() + "*" + right.getShape() + ")";
+        case DOT_PRODUCT -> "(" + left.getShape() + "." + right.getShape() + ")";
+      };
+    }
+  }
+
+  private static class SideEffectDetector extends VisitorAdaptor {
+
+    private boolean hasSideEffects = false;
+
+    @Override
+    public void visit(MethodCallFactor methodCallFactor) {
+      hasSideEffects = true;
+    }
+
+    @Override
+    public void visit(NewScalarFactor newScalarFactor) {
+      hasSideEffects = true;
+    }
+
+    @Override
+    public void visit(NewVectorFactor newVectorFactor) {
+      hasSideEffects = true;
+    }
+  }
+
+  private final ConstantFolder constantFolder;
+  private final Map<SyntaxNode, Tree> trees = new IdentityHashMap<>();
+  private final List<Tree> operations = new ArrayList<>();
+  private final Map<SyntaxNode, Tree> roots = new IdentityHashMap<>();
+  private final Set<SyntaxNode> fusedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+  private int intermediateArrayCount = 0;
+
+  /**
+   * Finds the fused expressions of the program. The expressions that the given constant folder (if
+   * any) has found dead are left out; its constant operands count as scalars.
+   */
+  public static VectorFusion fuse(Program program, ConstantFolder constantFolder) {
+    var vectorFusion = new VectorFusion(constantFolder);
+    MJUtils.traverseBottomUp(program, vectorFusion);
+    for (var operation : vectorFusion.operations) {
+      if (!operation.isOperand
+          && operation.getOperationCount() >= 2
+          && (constantFolder == null || !constantFolder.isInDeadCode(operation.node))) {
+        vectorFusion.addRoot(operation);
+      }
+    }
+    return vectorFusion;
+  }
+
+  private VectorFusion(ConstantFolder constantFolder) {
+    this.constantFolder = constantFolder;
+  }
+
+  private void addRoot(Tree root) {
+    roots.put(root.node, root);
+    markFused(root);
+    if (root.isVector()) {
+      intermediateArrayCount--;
+    }
+  }
+
+  private void markFused(Tree tree) {
+    if (tree.isOperation()) {
+      fusedNodes.add(tree.node);
+      if (tree.isVector()) {
+        intermediateArrayCount++;
+      }
+      markFused(tree.left);
+      markFused(tree.right);
+    }
+  }
+
+  /**
+   * Returns true if the node is an operation of a fused expression, whose code is replaced by the
+   * loop of the expression.
+   */
+  public boolean isFused(SyntaxNode node) {
+    return fusedNodes.contains(node);
+  }
+
+  /** Returns the tree of the expression if the node is the root operation of a fused one. */
+  Optional<Tree> getRoot(SyntaxNode node) {
+    return Optional.ofNullable(roots.get(node));
+  }
+
+  /** Returns the number of expressions that are computed by a single loop. */
+  public int getFusedExpressionCount() {
+    return roots.size();
+  }
+
+  /** Returns the number of vector operations fused into a loop, including the roots. */
+  public int getFusedOperationCount() {
+    return fusedNodes.size();
+  }
+
+  /** Returns the number of intermediate arrays that fused expressions no longer allocate. */
+  public int getIntermediateArrayCount() {
+    return intermediateArrayCount;
+  }
+
+  private Tree getTree(SyntaxNode node, Obj obj) {
+    var tree = trees.get(node);
+    if (tree == null
+        && obj.getType().equals(MJTab.intType)
+        && constantFolder != null
+        && constantFolder.getValue(node).isPresent()) {
+      tree = new Tree(Tree.Kind.SCALAR, null, null, node);
+    }
+    return tree;
+  }
+
+  private static boolean isScalar(Tree tree) {
+    return tree != null && tree.kind == Tree.Kind.SCALAR;
+  }
+
+  private static boolean isVector(Tree tree) {
+    return tree != null && tree.isVector();
+  }
+
+  private void addOperation(Tree.Kind kind, Tree left, Tree right, SyntaxNode node) {
+    var tree = new Tree(kind, left, right, node);
+    left.isOperand = true;
+    right.isOperand = true;
+    trees.put(node, tree);
+    operations.add(tree);
+  }
+
+  private void addScalar(SyntaxNode node) {
+    trees.put(node, new Tree(Tree.Kind.SCALAR, null, null, node));
+  }
+
+  @Override
+  public void visit(DesignatorFactor designatorFactor) {
+    var type = designatorFactor.obj.getType();
+    if (!type.equals(MJTab.INT_ARRAY_TYPE) && !type.equals(MJTab.intType)) {
+      return;
+    }
+    var sideEffectDetector = new SideEffectDetector();
+    designatorFactor.getDesignator().traverseBottomUp(sideEffectDetector);
+    if (!sideEffectDetector.hasSideEffects) {
+      trees.put(
+          designatorFactor,
+          new Tree(
+              type.equals(MJTab.intType) ? Tree.Kind.SCALAR : Tree.Kind.VECTOR,
+              null,
+              null,
+              designatorFactor));
+    }
+  }
+
+  @Override
+  public void visit(IntFactor intFactor) {
+    addScalar(intFactor);
+  }
+
+  @Override
+  public void visit(DelimitedFactor delimitedFactor) {
+    var tree = getTree(delimitedFactor.getExpr(), delimitedFactor.getExpr().obj);
+    if (tree != null) {
+      trees.put(delimitedFactor, tree);
+    }
+  }
+
+  @Override
+  public void visit(FactorTerm factorTerm) {
+    var tree = getTree(factorTerm.getFactor(), factorTerm.getFactor().obj);
+    if (tree != null) {
+      trees.put(factorTerm, tree);
+    }
+  }
+
+  @Override
+  public void visit(TermExpr termExpr) {
+    var tree = getTree(termExpr.getTerm(), termExpr.getTerm().obj);
+    if (tree != null) {
+      trees.put(termExpr, tree);
+    }
+  }
+
+  @Override
+  public void visit(MinusTermExpr minusTermExpr) {
+    if (isScalar(getTree(minusTermExpr.getTerm(), minusTermExpr.getTerm().obj))) {
+      addScalar(minusTermExpr);
+    }
+  }
+
+  @Override
+  public void visit(AddopExpr addopExpr) {
+    var left = getTree(addopExpr.getExpr(), addopExpr.getExpr().obj);
+    var right = getTree(addopExpr.getTerm(), addopExpr.getTerm().obj);
+    if (isScalar(left) && isScalar(right)) {
+      addScalar(addopExpr);
+    } else if (addopExpr.getAddop() instanceof PlusAddop && isVector(left) && isVector(right)) {
+      addOperation(Tree.Kind.SUM, left, right, addopExpr);
+    }
+  }
+
+  @Override
+  public void visit(MulopTerm mulopTerm) {
+    if (!(mulopTerm.getMulop() instanceof TimesMulop)) {
+      return;
+    }
+    var left = getTree(mulopTerm.getTerm(), mulopTerm.getTerm().obj);
+    var right = getTree(mulopTerm.getFactor(), mulopTerm.getFactor().obj);
+    if (isScalar(left) && isScalar(right)) {
+      addScalar(mulopTerm);
+    } else if (isVector(left) && isVector(right)) {
+      addOperation(Tree.Kind.DOT_PRODUCT, left, right, mulopTerm);
+    } else if ((isVector(left) && isScalar(right)) || (isScalar(left) && isVector(right))) {
+      addOperation(Tree.Kind.PRODUCT, left, right, mulopTerm);
+    }
+  }
+}
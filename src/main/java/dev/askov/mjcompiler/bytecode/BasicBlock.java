@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A maximal sequence of instructions that control only enters at the first instruction and only
+ * leaves after the last one. Calls don't end a block, since they return to the next instruction.
+ *
+ * @author Danijel Askov
+ */
+public class BasicBlock {
+
+  private final List<Instruction> instructions;
+  private final List<BasicBlock> successors = new ArrayList<>();
+  private final List<BasicBlock> predecessors = new ArrayList<>();
+
+  BasicBlock(List<Instruction> instructions) {
+    this.instructions = List.copyOf(instructions);
+  }
+
+  void addSuccessor(BasicBlock successor) {
+    successors.add(successor);
+    successor.predecessors.add(this);
+  }
+
+  public List<Instruction> getInstructions() {
+    return instructions;
+  }
+
+  public Instruction getFirst() {
+    return instructions.get(0);
+  }
+
+  public Instruction getLast() {
+    return instructions.get(instructions.size() - 1);
+  }
+
+  public List<BasicBlock> getSuccessors() {
+    return Collections.unmodifiableList(successors);
+  }
+
+  public List<BasicBlock> getPredecessors() {
+    return Collections.unmodifiableList(predecessors);
+  }
+}
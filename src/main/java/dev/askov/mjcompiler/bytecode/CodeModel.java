@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntUnaryOperator;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * The code in the <code>rs.etf.pp1.mj.runtime.Code.buf</code> buffer as a list of {@link
+ * Instruction}s. Instructions can be replaced; references to a replaced instruction are redirected
+ * to its replacement, or to the instruction that follows it if it has been removed. Encoding the
+ * model writes it back to the buffer and relocates all jumps and calls.
+ *
+ * @author Danijel Askov
+ */
+public class CodeModel {
+
+  private final List<Instruction> instructions;
+  private final Map<Integer, Instruction> decodedInstructions;
+  private final Map<Instruction, Instruction> replacements = new IdentityHashMap<>();
+
+  private CodeModel(List<Instruction> instructions, Map<Integer, Instruction> decodedInstructions) {
+    this.instructions = instructions;
+    this.decodedInstructions = decodedInstructions;
+  }
+
+  /**
+   * Decodes the code from address 0 up to <code>rs.etf.pp1.mj.runtime.Code.pc</code>.
+   *
+   * @return an empty optional if the code contains an instruction the model does not support
+   *     ({@code invokevirtual}) or a jump that does not land on an instruction
+   */
+  public static Optional<CodeModel> decode() {
+    var end = Code.pc;
+    if (end > Code.buf.length) {
+      return Optional.empty();
+    }
+    var instructions = new ArrayList<Instruction>();
+    var decodedInstructions = new HashMap<Integer, Instruction>();
+    var targetAddresses = new IdentityHashMap<Instruction, Integer>();
+    var address = 0;
+    while (address < end) {
+      var opcode = Code.buf[address] & 0xff;
+      var size = Instruction.sizeOf(opcode);
+      if (size < 0 || address + size > end) {
+        return Optional.empty();
+      }
+      Instruction instruction;
+      if (opcode == Code.jmp || opcode == Code.call || Instruction.isConditionalJump(opcode)) {
+        instruction = Instruction.jump(opcode, null);
+        targetAddresses.put(instruction, address + get2(address + 1));
+      } else if (opcode == Code.const_) {
+        instruction = Instruction.of(opcode, get4(address + 1));
+      } else if (opcode == Code.inc || opcode == Code.enter) {
+        instruction = Instruction.of(opcode, Code.buf[address + 1], Code.buf[address + 2]);
+      } else if (size == 3) {
+        instruction = Instruction.of(opcode, get2(address + 1));
+      } else if (size == 2) {
+        instruction = Instruction.of(opcode, Code.buf[address + 1]);
+      } else {
+        instruction = Instruction.of(opcode);
+      }
+      instruction.setAddress(address);
+      instructions.add(instruction);
+      decodedInstructions.put(address, instruction);
+      address += size;
+    }
+    for (var entry : targetAddresses.entrySet()) {
+      var target = decodedInstructions.get(entry.getValue());
+      if (target == null) {
+        return Optional.empty();
+      }
+      entry.getKey().setTarget(target);
+    }
+    return Optional.of(new CodeModel(instructions, decodedInstructions));
+  }
+
+  private static int get2(int address) {
+    return (short) (((Code.buf[address] & 0xff) << 8) | (Code.buf[address + 1] & 0xff));
+  }
+
+  private static int get4(int address) {
+    return (get2(address) << 16) | (get2(address + 2) & 0xffff);
+  }
+
+  public List<Instruction> getInstructions() {
+    return Collections.unmodifiableList(instructions);
+  }
+
+  /** Returns the size of the code in bytes. */
+  public int getSize() {
+    var size = 0;
+    for (var instruction : instructions) {
+      size += instruction.getSize();
+    }
+    return size;
+  }
+
+  /**
+   * Replaces {@code count} instructions starting at {@code index}. Jumps to the first of them are
+   * redirected to the first instruction of the replacement, or to the instruction that follows the
+   * replaced ones if the replacement is empty; jumps to the others are redirected the same way.
+   */
+  public void replace(int index, int count, List<Instruction> replacement) {
+    var replaced = instructions.subList(index, index + count);
+    Instruction successor;
+    if (!replacement.isEmpty()) {
+      successor = replacement.get(0);
+    } else {
+      successor = index + count < instructions.size() ? instructions.get(index + count) : null;
+    }
+    for (var instruction : replaced) {
+      if (successor != null && !replacement.contains(instruction)) {
+        replacements.put(instruction, successor);
+      }
+    }
+    replaced.clear();
+    instructions.addAll(index, replacement);
+  }
+
+  /** Returns the instruction that references to the given instruction now lead to. */
+  public Instruction resolve(Instruction instruction) {
+    var replacement = replacements.get(instruction);
+    while (replacement != null) {
+      instruction = replacement;
+      replacement = replacements.get(instruction);
+    }
+    return instruction;
+  }
+
+  /** Redirects every jump and call to a replaced instruction to its replacement. */
+  public void resolveTargets() {
+    for (var instruction : instructions) {
+      if (instruction.hasTarget()) {
+        instruction.setTarget(resolve(instruction.getTarget()));
+      }
+    }
+  }
+
+  /**
+   * Writes the code back to the buffer from address 0 and sets <code>rs.etf.pp1.mj.runtime.Code.pc
+   * </code> to its end.
+   *
+   * @return the relocation of the decoded addresses: it maps the address of a decoded instruction
+   *     to the address of the instruction that references to it lead to now
+   */
+  public IntUnaryOperator encode() {
+    resolveTargets();
+    var address = 0;
+    for (var instruction : instructions) {
+      instruction.setAddress(address);
+      address += instruction.getSize();
+    }
+    Code.pc = 0;
+    for (var instruction : instructions) {
+      var opcode = instruction.getOpcode();
+      Code.put(opcode);
+      if (instruction.hasTarget()) {
+        Code.put2(instruction.getTarget().getAddress() - instruction.getAddress());
+      } else if (opcode == Code.const_) {
+        Code.put4(instruction.getOperand());
+      } else if (opcode == Code.inc || opcode == Code.enter) {
+        Code.put(instruction.getOperand());
+        Code.put(instruction.getOperand2());
+      } else if (instruction.getSize() == 3) {
+        Code.put2(instruction.getOperand());
+      } else if (instruction.getSize() == 2) {
+        Code.put(instruction.getOperand());
+      }
+    }
+    return decodedAddress -> {
+      var instruction = decodedInstructions.get(decodedAddress);
+      return instruction != null ? resolve(instruction).getAddress() : decodedAddress;
+    };
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * The basic blocks of a {@link CodeModel} and the edges between them. Every method starts a new
+ * block (with its {@code enter} instruction); there are no edges between the blocks of different
+ * methods.
+ *
+ * <p>The graph is a snapshot: it has to be built again once the code model has been changed.
+ *
+ * @author Danijel Askov
+ */
+public class ControlFlowGraph {
+
+  private final List<BasicBlock> blocks = new ArrayList<>();
+  private final Map<Instruction, BasicBlock> blocksByFirstInstruction = new IdentityHashMap<>();
+
+  private ControlFlowGraph() {}
+
+  public static ControlFlowGraph build(CodeModel codeModel) {
+    codeModel.resolveTargets();
+    var instructions = codeModel.getInstructions();
+    Set<Instruction> leaders = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (var i = 0; i < instructions.size(); i++) {
+      var instruction = instructions.get(i);
+      if (i == 0 || instruction.getOpcode() == Code.enter) {
+        leaders.add(instruction);
+      }
+      if (instruction.isJump()) {
+        leaders.add(instruction.getTarget());
+      }
+      if ((instruction.isJump() || instruction.endsFlow()) && i + 1 < instructions.size()) {
+        leaders.add(instructions.get(i + 1));
+      }
+    }
+
+    var controlFlowGraph = new ControlFlowGraph();
+    var start = 0;
+    for (var i = 1; i <= instructions.size(); i++) {
+      if (i == instructions.size() || leaders.contains(instructions.get(i))) {
+        var block = new BasicBlock(instructions.subList(start, i));
+        controlFlowGraph.blocks.add(block);
+        controlFlowGraph.blocksByFirstInstruction.put(block.getFirst(), block);
+        start = i;
+      }
+    }
+
+    var blocks = controlFlowGraph.blocks;
+    for (var i = 0; i < blocks.size(); i++) {
+      var block = blocks.get(i);
+      var last = block.getLast();
+      if (last.isJump()) {
+        block.addSuccessor(controlFlowGraph.blocksByFirstInstruction.get(last.getTarget()));
+      }
+      if (!last.endsFlow()
+          && i + 1 < blocks.size()
+          && blocks.get(i + 1).getFirst().getOpcode() != Code.enter) {
+        block.addSuccessor(blocks.get(i + 1));
+      }
+    }
+    return controlFlowGraph;
+  }
+
+  /** Returns the blocks in the order of their code. */
+  public List<BasicBlock> getBlocks() {
+    return Collections.unmodifiableList(blocks);
+  }
+
+  /** Returns the block that starts with the given instruction, or null if there is none. */
+  public BasicBlock getBlock(Instruction first) {
+    return blocksByFirstInstruction.get(first);
+  }
+}
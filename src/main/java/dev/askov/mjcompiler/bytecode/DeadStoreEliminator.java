@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * Removes the stores to local variables that are never loaded afterwards (see {@link
+ * LivenessAnalysis}). A dead {@code store} is replaced by a {@code pop}, which a {@link
+ * PeepholeOptimizer} can remove together with the push of the value; a dead {@code inc} is
+ * removed.
+ *
+ * @author Danijel Askov
+ */
+public class DeadStoreEliminator {
+
+  private DeadStoreEliminator() {}
+
+  /** Returns the number of stores removed. */
+  public static int eliminate(CodeModel codeModel) {
+    var controlFlowGraph = ControlFlowGraph.build(codeModel);
+    var livenessAnalysis = LivenessAnalysis.analyze(controlFlowGraph);
+
+    Set<Instruction> deadStores = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (var block : controlFlowGraph.getBlocks()) {
+      var live = livenessAnalysis.getLiveOut(block);
+      var instructions = block.getInstructions();
+      for (var i = instructions.size() - 1; i >= 0; i--) {
+        var instruction = instructions.get(i);
+        var slot =
+            instruction.getOpcode() == Code.inc
+                ? instruction.getOperand()
+                : instruction.getStoredSlot();
+        if (slot >= 0 && !live.get(slot)) {
+          deadStores.add(instruction);
+        } else {
+          LivenessAnalysis.transfer(instruction, live);
+        }
+      }
+    }
+
+    var removed = 0;
+    var instructions = codeModel.getInstructions();
+    for (var i = 0; i < instructions.size(); i++) {
+      var instruction = instructions.get(i);
+      if (!deadStores.contains(instruction)) {
+        continue;
+      }
+      if (instruction.getOpcode() != Code.inc) {
+        codeModel.replace(i, 1, List.of(Instruction.of(Code.pop)));
+      } else if (i + 1 < instructions.size()) {
+        codeModel.replace(i--, 1, List.of());
+      } else {
+        continue;
+      }
+      removed++;
+    }
+    return removed;
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * Replaces calls of small methods by the code of the called method. Only methods that call no
+ * other method are inlined, so a method is never inlined into itself; once all of its calls have
+ * been inlined, a method may be inlined in turn.
+ *
+ * <p>The locals of an inlined method are moved past the locals of the caller, whose frame grows
+ * by the largest frame it inlines (the operand of {@code enter} is a single signed byte). The
+ * arguments on the expression stack are stored to the moved parameters, and the locals that may be
+ * loaded before they are stored to (see {@link LivenessAnalysis}) are cleared, since {@code enter}
+ * would have cleared them. A return becomes a jump to the instruction that follows the call, which
+ * leaves the return value on the expression stack.
+ *
+ * <p>A method that is no longer called is removed, unless it is the method execution starts at.
+ *
+ * @author Danijel Askov
+ */
+public class Inliner {
+
+  /** The largest method, in bytes of code between {@code enter} and the last return, inlined. */
+  public static final int MAX_INLINED_SIZE = 32;
+
+  /** The largest method inlined if it is called from one place only (and then removed). */
+  public static final int MAX_INLINED_SIZE_OF_SINGLE_CALL = 128;
+
+  private static final int MAX_FRAME_SIZE = 127;
+
+  private static class Method {
+
+    private final Instruction enter;
+    private final List<Instruction> body;
+    private final boolean callsMethods;
+    private int callCount = 0;
+    private int inlinedCallCount = 0;
+    private int frameGrowth = 0;
+
+    private Method(Instruction enter, List<Instruction> body) {
+      this.enter = enter;
+      this.body = body;
+      var callsMethods = false;
+      for (var instruction : body) {
+        callsMethods |= instruction.getOpcode() == Code.call;
+      }
+      this.callsMethods = callsMethods;
+    }
+
+    private int getParameterCount() {
+      return enter.getOperand();
+    }
+
+    private int getFrameSize() {
+      return enter.getOperand2();
+    }
+
+    private boolean endsWithReturn() {
+      var size = body.size();
+      return size >= 2
+          && body.get(size - 2).getOpcode() == Code.exit
+          && body.get(size - 1).getOpcode() == Code.return_;
+    }
+
+    /** Returns the size of the code without the final return, if there is one. */
+    private int getSize() {
+      var size = 0;
+      for (var instruction : body) {
+        size += instruction.getSize();
+      }
+      return endsWithReturn() ? size - 2 : size;
+    }
+  }
+
+  private int inlinedCallCount = 0;
+  private int removedMethodCount = 0;
+
+  private Inliner() {}
+
+  /**
+   * Inlines calls until no more calls can be inlined.
+   *
+   * @param entryAddress the address of the method execution starts at, which is never removed
+   */
+  public static Inliner inline(CodeModel codeModel, int entryAddress) {
+    var inliner = new Inliner();
+    Instruction entry = null;
+    for (var instruction : codeModel.getInstructions()) {
+      if (instruction.getAddress() == entryAddress) {
+        entry = instruction;
+      }
+    }
+    while (inliner.inlineLeafMethods(codeModel, entry)) {}
+    return inliner;
+  }
+
+  /** Returns the number of call sites replaced by the code of the called method. */
+  public int getInlinedCallCount() {
+    return inlinedCallCount;
+  }
+
+  /** Returns the number of methods removed because they are no longer called. */
+  public int getRemovedMethodCount() {
+    return removedMethodCount;
+  }
+
+  private static Map<Instruction, Method> findMethods(List<Instruction> instructions) {
+    Map<Instruction, Method> methods = new IdentityHashMap<>();
+    var start = -1;
+    for (var i = 0; i <= instructions.size(); i++) {
+      if (i < instructions.size() && instructions.get(i).getOpcode() != Code.enter) {
+        continue;
+      }
+      if (start >= 0) {
+        var enter = instructions.get(start);
+        methods.put(enter, new Method(enter, List.copyOf(instructions.subList(start + 1, i))));
+      }
+      start = i;
+    }
+    return methods;
+  }
+
+  private static boolean canBeInlined(Method method) {
+    if (method.callsMethods) {
+      return false;
+    }
+    for (var i = 0; i < method.body.size(); i++) {
+      var instruction = method.body.get(i);
+      var isReturn = instruction.getOpcode() == Code.return_;
+      var isExit = instruction.getOpcode() == Code.exit;
+      if ((isReturn && (i == 0 || method.body.get(i - 1).getOpcode() != Code.exit))
+          || (isExit
+              && (i + 1 == method.body.size()
+                  || method.body.get(i + 1).getOpcode() != Code.return_))) {
+        return false;
+      }
+      if (instruction.hasTarget()
+          && (instruction.getTarget().getOpcode() == Code.return_
+              || !method.body.contains(instruction.getTarget()))) {
+        return false;
+      }
+    }
+    var size = method.getSize();
+    return size <= MAX_INLINED_SIZE
+        || (method.callCount == 1 && size <= MAX_INLINED_SIZE_OF_SINGLE_CALL);
+  }
+
+  /**
+   * Returns a copy of the code of the method with its locals moved by {@code base} slots, starting
+   * with the stores of the arguments.
+   */
+  private static List<Instruction> copy(
+      Method method,
+      int base,
+      LivenessAnalysis livenessAnalysis,
+      BasicBlock entryBlock,
+      Instruction next) {
+    List<Instruction> copy = new ArrayList<>();
+    for (var parameter = method.getParameterCount() - 1; parameter >= 0; parameter--) {
+      copy.add(Instruction.store(base + parameter));
+    }
+    var liveLocals = livenessAnalysis.getLiveIn(entryBlock);
+    for (var local = method.getParameterCount(); local < method.getFrameSize(); local++) {
+      if (liveLocals.get(local)) {
+        copy.add(Instruction.loadConst(0));
+        copy.add(Instruction.store(base + local));
+      }
+    }
+
+    var body = method.body;
+    var size = method.endsWithReturn() ? body.size() - 2 : body.size();
+    Map<Instruction, Instruction> copies = new IdentityHashMap<>();
+    for (var i = 0; i < size; i++) {
+      var instruction = body.get(i);
+      var opcode = instruction.getOpcode();
+      Instruction instructionCopy;
+      if (instruction.getLoadedSlot() >= 0) {
+        instructionCopy = Instruction.load(base + instruction.getLoadedSlot());
+      } else if (instruction.getStoredSlot() >= 0) {
+        instructionCopy = Instruction.store(base + instruction.getStoredSlot());
+      } else if (opcode == Code.inc) {
+        instructionCopy =
+            Instruction.of(Code.inc, base + instruction.getOperand(), instruction.getOperand2());
+      } else if (opcode == Code.exit) {
+        instructionCopy = Instruction.jump(Code.jmp, next);
+        i++;
+      } else if (instruction.hasTarget()) {
+        instructionCopy = Instruction.jump(opcode, instruction.getTarget());
+      } else {
+        instructionCopy =
+            Instruction.of(opcode, instruction.getOperand(), instruction.getOperand2());
+      }
+      copies.put(instruction, instructionCopy);
+      copy.add(instructionCopy);
+    }
+    for (var instruction : copy) {
+      if (instruction.hasTarget() && copies.containsKey(instruction.getTarget())) {
+        instruction.setTarget(copies.get(instruction.getTarget()));
+      } else if (instruction.hasTarget() && instruction.getTarget() != next) {
+        // A jump to the final return.
+        instruction.setTarget(next);
+      }
+    }
+    return copy;
+  }
+
+  /** Returns true if a call has been inlined. */
+  private boolean inlineLeafMethods(CodeModel codeModel, Instruction entry) {
+    var controlFlowGraph = ControlFlowGraph.build(codeModel);
+    var livenessAnalysis = LivenessAnalysis.analyze(controlFlowGraph);
+    var instructions = codeModel.getInstructions();
+    var methods = findMethods(instructions);
+
+    List<Method> callers = new ArrayList<>();
+    Method caller = null;
+    for (var instruction : instructions) {
+      if (instruction.getOpcode() == Code.enter) {
+        caller = methods.get(instruction);
+      } else if (instruction.getOpcode() == Code.call) {
+        var callee = methods.get(instruction.getTarget());
+        if (callee != null) {
+          callee.callCount++;
+        }
+      }
+      callers.add(caller);
+    }
+
+    Map<Method, Boolean> inlinable = new HashMap<>();
+    var inlined = false;
+    for (var i = instructions.size() - 1; i >= 0; i--) {
+      var instruction = instructions.get(i);
+      caller = callers.get(i);
+      if (instruction.getOpcode() != Code.call || caller == null) {
+        continue;
+      }
+      var callee = methods.get(instruction.getTarget());
+      if (callee == null
+          || callee == caller
+          || !inlinable.computeIfAbsent(callee, Inliner::canBeInlined)
+          || caller.getFrameSize() + callee.getFrameSize() > MAX_FRAME_SIZE
+          || i + 1 >= instructions.size()) {
+        continue;
+      }
+      codeModel.replace(
+          i,
+          1,
+          copy(
+              callee,
+              caller.getFrameSize(),
+              livenessAnalysis,
+              controlFlowGraph.getBlock(callee.enter),
+              instructions.get(i + 1)));
+      caller.frameGrowth = Math.max(caller.frameGrowth, callee.getFrameSize());
+      callee.inlinedCallCount++;
+      inlinedCallCount++;
+      inlined = true;
+    }
+
+    for (var method : methods.values()) {
+      if (method.frameGrowth > 0) {
+        codeModel.replace(
+            instructions.indexOf(method.enter),
+            1,
+            List.of(
+                Instruction.of(
+                    Code.enter,
+                    method.getParameterCount(),
+                    method.getFrameSize() + method.frameGrowth)));
+      }
+    }
+    for (var method : methods.values()) {
+      if (method.inlinedCallCount > 0
+          && method.inlinedCallCount == method.callCount
+          && (entry == null || codeModel.resolve(entry) != method.enter)) {
+        codeModel.replace(instructions.indexOf(method.enter), method.body.size() + 1, List.of());
+        removedMethodCount++;
+      }
+    }
+    return inlined;
+  }
+}
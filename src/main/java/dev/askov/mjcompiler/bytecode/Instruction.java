@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * A decoded MicroJava VM instruction. Jumps and calls refer to the instruction they transfer
+ * control to instead of an offset, so that instructions can be inserted and removed freely; the
+ * offsets are recomputed when the code is encoded again.
+ *
+ * @author Danijel Askov
+ */
+public class Instruction {
+
+  private static final int CONDITION_COUNT = 6;
+
+  private final int opcode;
+  private final int operand;
+  private final int operand2;
+  private Instruction target;
+  private int address = -1;
+
+  private Instruction(int opcode, int operand, int operand2, Instruction target) {
+    this.opcode = opcode;
+    this.operand = operand;
+    this.operand2 = operand2;
+    this.target = target;
+  }
+
+  public static Instruction of(int opcode) {
+    return new Instruction(opcode, 0, 0, null);
+  }
+
+  public static Instruction of(int opcode, int operand) {
+    return new Instruction(opcode, operand, 0, null);
+  }
+
+  public static Instruction of(int opcode, int operand, int operand2) {
+    return new Instruction(opcode, operand, operand2, null);
+  }
+
+  /** Returns a jump, conditional jump or call to the given instruction. */
+  public static Instruction jump(int opcode, Instruction target) {
+    return new Instruction(opcode, 0, 0, target);
+  }
+
+  /** Returns the load of a local variable, in the short form if there is one. */
+  public static Instruction load(int slot) {
+    return slot <= 3 ? of(Code.load_n + slot) : of(Code.load, slot);
+  }
+
+  /** Returns the store to a local variable, in the short form if there is one. */
+  public static Instruction store(int slot) {
+    return slot <= 3 ? of(Code.store_n + slot) : of(Code.store, slot);
+  }
+
+  /** Returns the load of a constant, in the short form if there is one. */
+  public static Instruction loadConst(int value) {
+    if (value == -1) {
+      return of(Code.const_m1);
+    }
+    return value >= 0 && value <= 5 ? of(Code.const_n + value) : of(Code.const_, value);
+  }
+
+  /**
+   * Returns the size of the instruction with the given opcode in bytes, or -1 if the opcode is
+   * unknown or the instruction has no fixed size ({@code invokevirtual}).
+   */
+  public static int sizeOf(int opcode) {
+    if (isConditionalJump(opcode)) {
+      return 3;
+    }
+    return switch (opcode) {
+      case Code.load, Code.store, Code.newarray, Code.trap -> 2;
+      case Code.getstatic, Code.putstatic, Code.getfield, Code.putfield, Code.new_ -> 3;
+      case Code.inc, Code.enter, Code.jmp, Code.call -> 3;
+      case Code.const_ -> 5;
+      case Code.invokevirtual -> -1;
+      default -> opcode > 0 && opcode <= Code.dup_x2 ? 1 : -1;
+    };
+  }
+
+  public static boolean isConditionalJump(int opcode) {
+    return opcode >= Code.jcc && opcode < Code.jcc + CONDITION_COUNT;
+  }
+
+  public int getOpcode() {
+    return opcode;
+  }
+
+  public int getOperand() {
+    return operand;
+  }
+
+  public int getOperand2() {
+    return operand2;
+  }
+
+  public int getSize() {
+    return sizeOf(opcode);
+  }
+
+  public boolean isJump() {
+    return opcode == Code.jmp || isConditionalJump(opcode);
+  }
+
+  public boolean hasTarget() {
+    return target != null;
+  }
+
+  public Instruction getTarget() {
+    return target;
+  }
+
+  public void setTarget(Instruction target) {
+    this.target = target;
+  }
+
+  /** Returns true if control never reaches the instruction that follows this one. */
+  public boolean endsFlow() {
+    return opcode == Code.jmp || opcode == Code.return_ || opcode == Code.trap;
+  }
+
+  /** Returns the slot of the local variable that is loaded, or -1 if this is not such a load. */
+  public int getLoadedSlot() {
+    if (opcode == Code.load) {
+      return operand;
+    }
+    return opcode >= Code.load_n && opcode <= Code.load_n + 3 ? opcode - Code.load_n : -1;
+  }
+
+  /** Returns the slot of the local variable that is stored, or -1 if this is not such a store. */
+  public int getStoredSlot() {
+    if (opcode == Code.store) {
+      return operand;
+    }
+    return opcode >= Code.store_n && opcode <= Code.store_n + 3 ? opcode - Code.store_n : -1;
+  }
+
+  /** Returns the value of the constant that is loaded, or null if this is not a constant load. */
+  public Integer getConstant() {
+    if (opcode == Code.const_) {
+      return operand;
+    } else if (opcode == Code.const_m1) {
+      return -1;
+    }
+    return opcode >= Code.const_n && opcode <= Code.const_n + 5 ? opcode - Code.const_n : null;
+  }
+
+  /** Returns the address the instruction has been decoded from or last encoded to. */
+  public int getAddress() {
+    return address;
+  }
+
+  void setAddress(int address) {
+    this.address = address;
+  }
+
+  @Override
+  public String toString() {
+    var stringBuilder = new StringBuilder().append(address).append(": ").append(opcode);
+    if (target != null) {
+      stringBuilder.append(" -> ").append(target.address);
+    } else if (getSize() > 1) {
+      stringBuilder.append(" ").append(operand);
+      if (opcode == Code.inc || opcode == Code.enter) {
+        stringBuilder.append(" ").append(operand2);
+      }
+    }
+    return stringBuilder.toString();
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * Computes which local variables are live (may still be loaded before they are stored to) at the
+ * start and at the end of every block of a {@link ControlFlowGraph}. Locals are identified by
+ * their slot. No local is live after a method returns; local variables can't be referenced from
+ * other methods.
+ *
+ * @author Danijel Askov
+ */
+public class LivenessAnalysis {
+
+  private final Map<BasicBlock, BitSet> liveIn = new IdentityHashMap<>();
+  private final Map<BasicBlock, BitSet> liveOut = new IdentityHashMap<>();
+
+  private LivenessAnalysis() {}
+
+  public static LivenessAnalysis analyze(ControlFlowGraph controlFlowGraph) {
+    var livenessAnalysis = new LivenessAnalysis();
+    var worklist = new ArrayDeque<BasicBlock>();
+    for (var block : controlFlowGraph.getBlocks()) {
+      livenessAnalysis.liveIn.put(block, new BitSet());
+      livenessAnalysis.liveOut.put(block, new BitSet());
+      worklist.push(block);
+    }
+    while (!worklist.isEmpty()) {
+      var block = worklist.poll();
+      var out = livenessAnalysis.liveOut.get(block);
+      for (var successor : block.getSuccessors()) {
+        out.or(livenessAnalysis.liveIn.get(successor));
+      }
+      var in = (BitSet) out.clone();
+      for (var i = block.getInstructions().size() - 1; i >= 0; i--) {
+        transfer(block.getInstructions().get(i), in);
+      }
+      if (!in.equals(livenessAnalysis.liveIn.get(block))) {
+        livenessAnalysis.liveIn.put(block, in);
+        for (var predecessor : block.getPredecessors()) {
+          worklist.add(predecessor);
+        }
+      }
+    }
+    return livenessAnalysis;
+  }
+
+  /** Turns the locals live after the instruction into the ones live before it. */
+  public static void transfer(Instruction instruction, BitSet live) {
+    var storedSlot = instruction.getStoredSlot();
+    if (storedSlot >= 0) {
+      live.clear(storedSlot);
+    }
+    var loadedSlot = instruction.getLoadedSlot();
+    if (loadedSlot >= 0) {
+      live.set(loadedSlot);
+    }
+    if (instruction.getOpcode() == Code.inc) {
+      live.set(instruction.getOperand());
+    }
+  }
+
+  public BitSet getLiveIn(BasicBlock block) {
+    return (BitSet) liveIn.get(block).clone();
+  }
+
+  public BitSet getLiveOut(BasicBlock block) {
+    return (BitSet) liveOut.get(block).clone();
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * Assigns the local variables of every method to slots anew, so that locals that are never live
+ * at the same time (see {@link LivenessAnalysis}) share a slot and the frame of the method shrinks.
+ * The locals used most often, counting a use in a loop as eight uses, get the lowest free slots,
+ * which have the short forms {@code load_n} and {@code store_n}.
+ *
+ * <p>Parameters keep their slots, since {@code enter} stores the arguments to them. A local may be
+ * loaded before it is stored to only if it is live where the method starts; it relies on {@code
+ * enter} clearing it, so it doesn't share a slot with anything that is live there either. A store
+ * keeps the locals live after it from sharing its slot even if the value stored is never loaded.
+ *
+ * @author Danijel Askov
+ */
+public class LocalAllocator {
+
+  private static final int LOOP_WEIGHT = 8;
+  private static final int MAX_LOOP_DEPTH = 8;
+
+  private int savedSlotCount = 0;
+  private int movedLocalCount = 0;
+
+  private LocalAllocator() {}
+
+  public static LocalAllocator allocate(CodeModel codeModel) {
+    var localAllocator = new LocalAllocator();
+    var controlFlowGraph = ControlFlowGraph.build(codeModel);
+    var livenessAnalysis = LivenessAnalysis.analyze(controlFlowGraph);
+    var instructions = codeModel.getInstructions();
+    Map<Instruction, Integer> indices = new IdentityHashMap<>();
+    for (var i = 0; i < instructions.size(); i++) {
+      indices.put(instructions.get(i), i);
+    }
+
+    var start = -1;
+    List<BasicBlock> blocks = new ArrayList<>();
+    for (var block : controlFlowGraph.getBlocks()) {
+      if (block.getFirst().getOpcode() == Code.enter) {
+        if (start >= 0) {
+          localAllocator.allocate(codeModel, livenessAnalysis, indices, start, blocks);
+        }
+        start = indices.get(block.getFirst());
+        blocks.clear();
+      }
+      blocks.add(block);
+    }
+    if (start >= 0) {
+      localAllocator.allocate(codeModel, livenessAnalysis, indices, start, blocks);
+    }
+    return localAllocator;
+  }
+
+  /** Returns the number of slots the frames of all methods have shrunk by. */
+  public int getSavedSlotCount() {
+    return savedSlotCount;
+  }
+
+  /** Returns the number of locals assigned to a slot other than their own. */
+  public int getMovedLocalCount() {
+    return movedLocalCount;
+  }
+
+  private static int getSlot(Instruction instruction) {
+    if (instruction.getOpcode() == Code.inc) {
+      return instruction.getOperand();
+    }
+    var loadedSlot = instruction.getLoadedSlot();
+    return loadedSlot >= 0 ? loadedSlot : instruction.getStoredSlot();
+  }
+
+  private static void addInterference(BitSet[] interference, int slot, BitSet live) {
+    for (var other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+      if (other != slot && other < interference.length && slot < interference.length) {
+        interference[slot].set(other);
+        interference[other].set(slot);
+      }
+    }
+  }
+
+  /** Allocates the locals of the method whose {@code enter} is the first of the blocks. */
+  private void allocate(
+      CodeModel codeModel,
+      LivenessAnalysis livenessAnalysis,
+      Map<Instruction, Integer> indices,
+      int start,
+      List<BasicBlock> blocks) {
+    var instructions = codeModel.getInstructions();
+    var enter = instructions.get(start);
+    var parameterCount = enter.getOperand();
+    var frameSize = enter.getOperand2();
+    if (frameSize <= parameterCount) {
+      return;
+    }
+
+    var interference = new BitSet[frameSize];
+    for (var slot = 0; slot < frameSize; slot++) {
+      interference[slot] = new BitSet();
+    }
+    var entryLive = (BitSet) livenessAnalysis.getLiveIn(blocks.get(0)).clone();
+    entryLive.set(0, parameterCount);
+    for (var slot = entryLive.nextSetBit(0); slot >= 0; slot = entryLive.nextSetBit(slot + 1)) {
+      addInterference(interference, slot, entryLive);
+    }
+    for (var block : blocks) {
+      var live = livenessAnalysis.getLiveOut(block);
+      var blockInstructions = block.getInstructions();
+      for (var i = blockInstructions.size() - 1; i >= 0; i--) {
+        var instruction = blockInstructions.get(i);
+        var storedSlot =
+            instruction.getOpcode() == Code.inc
+                ? instruction.getOperand()
+                : instruction.getStoredSlot();
+        if (storedSlot >= 0) {
+          addInterference(interference, storedSlot, live);
+        }
+        LivenessAnalysis.transfer(instruction, live);
+      }
+    }
+
+    var end = start + 1;
+    while (end < instructions.size() && instructions.get(end).getOpcode() != Code.enter) {
+      end++;
+    }
+    end--;
+
+    var depths = new int[end - start + 1];
+    for (var i = start; i <= end; i++) {
+      var instruction = instructions.get(i);
+      var target = instruction.isJump() ? indices.get(instruction.getTarget()) : null;
+      if (target != null && target >= start && target <= i) {
+        for (var j = target; j <= i; j++) {
+          depths[j - start]++;
+        }
+      }
+    }
+    var weights = new long[frameSize];
+    for (var i = start; i <= end; i++) {
+      var slot = getSlot(instructions.get(i));
+      if (slot >= 0 && slot < frameSize) {
+        long weight = 1;
+        for (var depth = Math.min(depths[i - start], MAX_LOOP_DEPTH); depth > 0; depth--) {
+          weight *= LOOP_WEIGHT;
+        }
+        weights[slot] += weight;
+      }
+    }
+
+    var slots = new int[frameSize];
+    List<Integer> locals = new ArrayList<>();
+    for (var slot = 0; slot < frameSize; slot++) {
+      slots[slot] = slot < parameterCount ? slot : -1;
+      if (slot >= parameterCount && weights[slot] > 0) {
+        locals.add(slot);
+      }
+    }
+    locals.sort(Comparator.comparingLong((Integer slot) -> -weights[slot]));
+    var newFrameSize = parameterCount;
+    for (var local : locals) {
+      var taken = new BitSet();
+      for (var other = interference[local].nextSetBit(0);
+          other >= 0;
+          other = interference[local].nextSetBit(other + 1)) {
+        if (slots[other] >= 0) {
+          taken.set(slots[other]);
+        }
+      }
+      slots[local] = taken.nextClearBit(0);
+      newFrameSize = Math.max(newFrameSize, slots[local] + 1);
+      if (slots[local] != local) {
+        movedLocalCount++;
+      }
+    }
+    if (newFrameSize == frameSize && locals.stream().allMatch(local -> slots[local] == local)) {
+      return;
+    }
+
+    for (var i = start + 1; i <= end; i++) {
+      var instruction = instructions.get(i);
+      var slot = getSlot(instruction);
+      if (slot < parameterCount || slot >= frameSize) {
+        continue;
+      }
+      Instruction replacement;
+      if (instruction.getOpcode() == Code.inc) {
+        replacement = Instruction.of(Code.inc, slots[slot], instruction.getOperand2());
+      } else if (instruction.getLoadedSlot() >= 0) {
+        replacement = Instruction.load(slots[slot]);
+      } else {
+        replacement = Instruction.store(slots[slot]);
+      }
+      codeModel.replace(i, 1, List.of(replacement));
+    }
+    codeModel.replace(
+        start, 1, List.of(Instruction.of(Code.enter, parameterCount, newFrameSize)));
+    savedSlotCount += frameSize - newFrameSize;
+  }
+}
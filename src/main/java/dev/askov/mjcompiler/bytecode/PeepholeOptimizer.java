@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * Rewrites short sequences of instructions of a {@link CodeModel} into shorter or faster ones,
+ * until no rule applies anymore:
+ *
+ * <ul>
+ *   <li>jumps to jumps are threaded to the final target, a jump to the next instruction is removed
+ *       (a conditional one only pops its operands), a conditional jump over a jump is inverted, and
+ *       a jump to {@code exit; return} is replaced by a copy of it;
+ *   <li>instructions that control can't reach (after a {@code jmp}, {@code return} or {@code trap}
+ *       and up to the next jump target or method) are removed;
+ *   <li>{@code store x; load x} becomes {@code dup; store x}, {@code load x; store x} and a push
+ *       followed by {@code pop} are removed, and {@code load x; const k; add; store x} becomes
+ *       {@code inc x, k};
+ *   <li>long forms of {@code load}, {@code store} and {@code const} are replaced by short forms.
+ * </ul>
+ *
+ * <p>A sequence is only rewritten if no jump leads into its middle.
+ *
+ * @author Danijel Askov
+ */
+public class PeepholeOptimizer {
+
+  private final CodeModel codeModel;
+  private final Set<Instruction> labels = Collections.newSetFromMap(new IdentityHashMap<>());
+  private int threadedJumpCount = 0;
+  private int unreachableInstructionCount = 0;
+  private int rewriteCount = 0;
+
+  private PeepholeOptimizer(CodeModel codeModel) {
+    this.codeModel = codeModel;
+  }
+
+  public static PeepholeOptimizer optimize(CodeModel codeModel) {
+    var peepholeOptimizer = new PeepholeOptimizer(codeModel);
+    boolean changed;
+    do {
+      codeModel.resolveTargets();
+      peepholeOptimizer.findLabels();
+      changed = peepholeOptimizer.threadJumps();
+      changed |= peepholeOptimizer.removeUnreachableInstructions();
+      changed |= peepholeOptimizer.rewrite();
+    } while (changed);
+    return peepholeOptimizer;
+  }
+
+  /** Returns the number of jumps that have been redirected past other jumps. */
+  public int getThreadedJumpCount() {
+    return threadedJumpCount;
+  }
+
+  /** Returns the number of unreachable instructions that have been removed. */
+  public int getUnreachableInstructionCount() {
+    return unreachableInstructionCount;
+  }
+
+  /** Returns the number of sequences that have been rewritten. */
+  public int getRewriteCount() {
+    return rewriteCount;
+  }
+
+  private List<Instruction> instructions() {
+    return codeModel.getInstructions();
+  }
+
+  private void findLabels() {
+    labels.clear();
+    if (!instructions().isEmpty()) {
+      labels.add(instructions().get(0));
+    }
+    for (var instruction : instructions()) {
+      if (instruction.hasTarget()) {
+        labels.add(instruction.getTarget());
+      }
+      if (instruction.getOpcode() == Code.enter) {
+        labels.add(instruction);
+      }
+    }
+  }
+
+  private boolean threadJumps() {
+    var changed = false;
+    for (var instruction : instructions()) {
+      if (!instruction.isJump()) {
+        continue;
+      }
+      var target = instruction.getTarget();
+      var steps = 0;
+      while (target.getOpcode() == Code.jmp
+          && target != instruction
+          && steps++ < instructions().size()) {
+        target = codeModel.resolve(target.getTarget());
+      }
+      if (target != instruction.getTarget() && target != instruction) {
+        instruction.setTarget(target);
+        labels.add(target);
+        threadedJumpCount++;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private boolean removeUnreachableInstructions() {
+    var changed = false;
+    for (var i = 0; i < instructions().size(); i++) {
+      if (!instructions().get(i).endsFlow()) {
+        continue;
+      }
+      var end = i + 1;
+      while (end < instructions().size() && !labels.contains(instructions().get(end))) {
+        end++;
+      }
+      if (end > i + 1) {
+        unreachableInstructionCount += end - i - 1;
+        codeModel.replace(i + 1, end - i - 1, List.of());
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Returns the {@code length} instructions starting at {@code index}, or null if there are not
+   * as many or a jump leads to any of them but the first.
+   */
+  private List<Instruction> window(int index, int length) {
+    if (index + length > instructions().size()) {
+      return null;
+    }
+    var window = instructions().subList(index, index + length);
+    for (var i = 1; i < length; i++) {
+      if (labels.contains(window.get(i))) {
+        return null;
+      }
+    }
+    return window;
+  }
+
+  private boolean rewrite() {
+    var changed = false;
+    var i = 0;
+    while (i < instructions().size()) {
+      if (rewriteAt(i)) {
+        rewriteCount++;
+        changed = true;
+        i = Math.max(i - 3, 0);
+      } else {
+        i++;
+      }
+    }
+    return changed;
+  }
+
+  private boolean replace(int index, int count, List<Instruction> replacement) {
+    if (replacement.isEmpty() && index + count >= instructions().size()) {
+      return false;
+    }
+    codeModel.replace(index, count, replacement);
+    return true;
+  }
+
+  private static boolean isPurePush(Instruction instruction) {
+    var opcode = instruction.getOpcode();
+    return instruction.getLoadedSlot() >= 0
+        || instruction.getConstant() != null
+        || opcode == Code.getstatic
+        || opcode == Code.dup;
+  }
+
+  private boolean rewriteAt(int index) {
+    var first = instructions().get(index);
+    var opcode = first.getOpcode();
+
+    if (opcode == Code.load && first.getOperand() <= 3 && first.getOperand() >= 0) {
+      return replace(index, 1, List.of(Instruction.load(first.getOperand())));
+    }
+    if (opcode == Code.store && first.getOperand() <= 3 && first.getOperand() >= 0) {
+      return replace(index, 1, List.of(Instruction.store(first.getOperand())));
+    }
+    if (opcode == Code.const_ && first.getOperand() >= -1 && first.getOperand() <= 5) {
+      return replace(index, 1, List.of(Instruction.loadConst(first.getOperand())));
+    }
+
+    var next = index + 1 < instructions().size() ? instructions().get(index + 1) : null;
+    if (first.isJump() && first.getTarget() == next) {
+      if (opcode == Code.jmp) {
+        return replace(index, 1, List.of());
+      }
+      // Both operands still have to be popped.
+      return replace(index, 1, List.of(Instruction.of(Code.pop), Instruction.of(Code.pop)));
+    }
+    if (opcode == Code.jmp
+        && first.getTarget().getOpcode() == Code.exit
+        && isFollowedByReturn(first.getTarget())) {
+      return replace(index, 1, List.of(Instruction.of(Code.exit), Instruction.of(Code.return_)));
+    }
+    var pair = window(index, 2);
+    if (pair == null) {
+      return false;
+    }
+    var second = pair.get(1);
+
+    if (Instruction.isConditionalJump(opcode)
+        && second.getOpcode() == Code.jmp
+        && index + 2 < instructions().size()
+        && first.getTarget() == instructions().get(index + 2)) {
+      var inverse = Code.jcc + Code.inverse[opcode - Code.jcc];
+      return replace(index, 2, List.of(Instruction.jump(inverse, second.getTarget())));
+    }
+
+    var storedSlot = first.getStoredSlot();
+    if (storedSlot > 3 && second.getLoadedSlot() == storedSlot) {
+      return replace(index, 2, List.of(Instruction.of(Code.dup), Instruction.store(storedSlot)));
+    }
+    if (opcode == Code.putstatic
+        && second.getOpcode() == Code.getstatic
+        && second.getOperand() == first.getOperand()) {
+      return replace(
+          index,
+          2,
+          List.of(Instruction.of(Code.dup), Instruction.of(Code.putstatic, first.getOperand())));
+    }
+    var loadedSlot = first.getLoadedSlot();
+    if ((loadedSlot >= 0 && second.getStoredSlot() == loadedSlot)
+        || (opcode == Code.getstatic
+            && second.getOpcode() == Code.putstatic
+            && second.getOperand() == first.getOperand())) {
+      return replace(index, 2, List.of());
+    }
+    if (isPurePush(first) && second.getOpcode() == Code.pop) {
+      return replace(index, 2, List.of());
+    }
+
+    var quadruple = window(index, 4);
+    if (loadedSlot >= 0 && quadruple != null) {
+      var constant = second.getConstant();
+      var operation = quadruple.get(2).getOpcode();
+      if (constant != null
+          && (operation == Code.add || operation == Code.sub)
+          && quadruple.get(3).getStoredSlot() == loadedSlot) {
+        var increment = operation == Code.add ? constant : -constant;
+        if (increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE && loadedSlot <= 127) {
+          return replace(index, 4, List.of(Instruction.of(Code.inc, loadedSlot, increment)));
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean isFollowedByReturn(Instruction instruction) {
+    var index = instructions().indexOf(instruction);
+    return index >= 0
+        && index + 1 < instructions().size()
+        && instructions().get(index + 1).getOpcode() == Code.return_;
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * Replaces multiplications by cheaper operations.
+ *
+ * <p>In a loop, the product of a local that the loop changes by {@code inc} only and a constant
+ * ({@code i * c}) is kept in a new local, which is set before the loop and changed by {@code c}
+ * times as much as the local wherever the local is incremented. The product is then loaded instead
+ * of computed. A loop is the code from the target of a backward jump to the jump; it is only
+ * changed if no jump from outside leads into it, so that it is always entered through the
+ * instruction that precedes it.
+ *
+ * <p>A multiplication by a constant power of two is replaced by a left shift. Division and
+ * remainder are left alone: without a bitwise {@code and}, rounding a negative dividend towards
+ * zero takes several more instructions than the division.
+ *
+ * @author Danijel Askov
+ */
+public class StrengthReducer {
+
+  private static final int MAX_FRAME_SIZE = 127;
+
+  private int inductionVariableCount = 0;
+  private int loopMultiplicationCount = 0;
+  private int shiftCount = 0;
+
+  private StrengthReducer() {}
+
+  public static StrengthReducer reduce(CodeModel codeModel) {
+    var strengthReducer = new StrengthReducer();
+    codeModel.resolveTargets();
+    while (strengthReducer.introduceInductionVariable(codeModel)) {
+      codeModel.resolveTargets();
+    }
+    strengthReducer.replaceMultiplicationsByShifts(codeModel);
+    return strengthReducer;
+  }
+
+  /** Returns the number of locals introduced to hold a product that a loop keeps up to date. */
+  public int getInductionVariableCount() {
+    return inductionVariableCount;
+  }
+
+  /** Returns the number of multiplications in loops replaced by loads of such a local. */
+  public int getLoopMultiplicationCount() {
+    return loopMultiplicationCount;
+  }
+
+  /** Returns the number of multiplications by a power of two replaced by a left shift. */
+  public int getShiftCount() {
+    return shiftCount;
+  }
+
+  /**
+   * Returns the slot of the local multiplied if the instructions at the index multiply a local by
+   * a constant other than 0 and 1, and -1 otherwise.
+   */
+  private static int getMultipliedSlot(List<Instruction> instructions, int index) {
+    if (index + 2 >= instructions.size() || instructions.get(index + 2).getOpcode() != Code.mul) {
+      return -1;
+    }
+    var first = instructions.get(index);
+    var second = instructions.get(index + 1);
+    var slot = first.getLoadedSlot() >= 0 ? first.getLoadedSlot() : second.getLoadedSlot();
+    var constant = first.getLoadedSlot() >= 0 ? second.getConstant() : first.getConstant();
+    return slot >= 0 && constant != null && constant != 0 && constant != 1 ? slot : -1;
+  }
+
+  private static int getMultiplier(List<Instruction> instructions, int index) {
+    var first = instructions.get(index);
+    return (first.getLoadedSlot() >= 0 ? instructions.get(index + 1) : first).getConstant();
+  }
+
+  private static Set<Instruction> getTargets(List<Instruction> instructions) {
+    Set<Instruction> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (var instruction : instructions) {
+      if (instruction.hasTarget()) {
+        targets.add(instruction.getTarget());
+      }
+    }
+    return targets;
+  }
+
+  /** Returns true if the loop from {@code start} to {@code end} is only entered at its start. */
+  private static boolean isEnteredAtStart(List<Instruction> instructions, int start, int end) {
+    var previous = start > 0 ? instructions.get(start - 1) : null;
+    if (previous == null || previous.endsFlow() || previous.hasTarget()) {
+      return false;
+    }
+    for (var i = 0; i < instructions.size(); i++) {
+      var instruction = instructions.get(i);
+      if ((i < start || i > end) && instruction.hasTarget()) {
+        var target = instructions.indexOf(instruction.getTarget());
+        if (target >= start && target <= end) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Returns true if a local has been introduced. */
+  private boolean introduceInductionVariable(CodeModel codeModel) {
+    var instructions = codeModel.getInstructions();
+    var targets = getTargets(instructions);
+    for (var end = 0; end < instructions.size(); end++) {
+      var jump = instructions.get(end);
+      if (!jump.isJump() || !jump.hasTarget()) {
+        continue;
+      }
+      var start = instructions.indexOf(jump.getTarget());
+      if (start < 0 || start > end) {
+        continue;
+      }
+      for (var i = start; i + 2 < end; i++) {
+        var slot = getMultipliedSlot(instructions, i);
+        if (slot >= 0
+            && !targets.contains(instructions.get(i + 1))
+            && !targets.contains(instructions.get(i + 2))
+            && introduceInductionVariable(
+                codeModel, targets, start, end, slot, getMultiplier(instructions, i))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean introduceInductionVariable(
+      CodeModel codeModel,
+      Set<Instruction> targets,
+      int start,
+      int end,
+      int slot,
+      int multiplier) {
+    var instructions = codeModel.getInstructions();
+    var enterIndex = start - 1;
+    while (enterIndex >= 0 && instructions.get(enterIndex).getOpcode() != Code.enter) {
+      enterIndex--;
+    }
+    if (enterIndex < 0
+        || instructions.get(enterIndex).getOperand2() >= MAX_FRAME_SIZE
+        || !isEnteredAtStart(instructions, start, end)) {
+      return false;
+    }
+    List<Integer> increments = new ArrayList<>();
+    List<Integer> multiplications = new ArrayList<>();
+    for (var i = start; i <= end; i++) {
+      var instruction = instructions.get(i);
+      if (instruction.getStoredSlot() == slot) {
+        return false;
+      } else if (instruction.getOpcode() == Code.inc && instruction.getOperand() == slot) {
+        increments.add(i);
+      } else if (i + 2 <= end
+          && getMultipliedSlot(instructions, i) == slot
+          && getMultiplier(instructions, i) == multiplier
+          && !targets.contains(instructions.get(i + 1))
+          && !targets.contains(instructions.get(i + 2))) {
+        multiplications.add(i);
+        i += 2;
+      }
+    }
+
+    var enter = instructions.get(enterIndex);
+    var product = enter.getOperand2();
+    // The code is changed from the end of the loop, so that the indices of what is still to be
+    // changed hold.
+    for (var i = end; i >= start; i--) {
+      if (increments.contains(i)) {
+        var step = instructions.get(i).getOperand2() * multiplier;
+        var increment = instructions.get(i);
+        codeModel.replace(
+            i,
+            1,
+            step >= Byte.MIN_VALUE && step <= Byte.MAX_VALUE
+                ? List.of(increment, Instruction.of(Code.inc, product, step))
+                : List.of(
+                    increment,
+                    Instruction.load(product),
+                    Instruction.loadConst(step),
+                    Instruction.of(Code.add),
+                    Instruction.store(product)));
+      } else if (multiplications.contains(i)) {
+        codeModel.replace(i, 3, List.of(Instruction.load(product)));
+        loopMultiplicationCount++;
+      }
+    }
+    var previous = instructions.get(start - 1);
+    codeModel.replace(
+        start - 1,
+        1,
+        List.of(
+            previous,
+            Instruction.load(slot),
+            Instruction.loadConst(multiplier),
+            Instruction.of(Code.mul),
+            Instruction.store(product)));
+    codeModel.replace(
+        enterIndex, 1, List.of(Instruction.of(Code.enter, enter.getOperand(), product + 1)));
+    inductionVariableCount++;
+    return true;
+  }
+
+  private void replaceMultiplicationsByShifts(CodeModel codeModel) {
+    var instructions = codeModel.getInstructions();
+    Set<Instruction> targets = getTargets(instructions);
+    for (var i = 0; i + 1 < instructions.size(); i++) {
+      var constant = instructions.get(i).getConstant();
+      if (instructions.get(i + 1).getOpcode() != Code.mul
+          || targets.contains(instructions.get(i + 1))
+          || constant == null
+          || constant <= 1
+          || Integer.bitCount(constant) != 1) {
+        continue;
+      }
+      codeModel.replace(
+          i,
+          2,
+          List.of(
+              Instruction.loadConst(Integer.numberOfTrailingZeros(constant)),
+              Instruction.of(Code.shl)));
+      shiftCount++;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * Turns the calls of a method to itself that are in tail position ({@code call; exit; return})
+ * into stores of the arguments to the parameters and a jump to the start of the method, so that
+ * the recursion runs in a single frame.
+ *
+ * <p>A call whose result is only added to or multiplied by a value before it is returned (e.g.
+ * {@code return n * fact(n - 1)}) is turned into a jump too, if every such call of the method uses
+ * the same operation. The method gets an accumulator local, which starts at the identity of the
+ * operation; the call combines the value with the accumulator instead, and every other return
+ * combines the returned value with the accumulator. Both operations are associative and
+ * commutative even when they overflow.
+ *
+ * <p>The locals that may be loaded before they are stored to are cleared before the jump, since
+ * {@code enter} would have cleared them.
+ *
+ * @author Danijel Askov
+ */
+public class TailCallEliminator {
+
+  private static final int MAX_FRAME_SIZE = 127;
+
+  private int tailCallCount = 0;
+  private int accumulatedCallCount = 0;
+
+  private TailCallEliminator() {}
+
+  public static TailCallEliminator eliminate(CodeModel codeModel) {
+    var tailCallEliminator = new TailCallEliminator();
+    var controlFlowGraph = ControlFlowGraph.build(codeModel);
+    var livenessAnalysis = LivenessAnalysis.analyze(controlFlowGraph);
+    List<Instruction> enters = new ArrayList<>();
+    for (var instruction : codeModel.getInstructions()) {
+      if (instruction.getOpcode() == Code.enter) {
+        enters.add(instruction);
+      }
+    }
+    for (var enter : enters) {
+      tailCallEliminator.eliminate(
+          codeModel, enter, livenessAnalysis.getLiveIn(controlFlowGraph.getBlock(enter)));
+    }
+    return tailCallEliminator;
+  }
+
+  /** Returns the number of calls in tail position turned into jumps. */
+  public int getTailCallCount() {
+    return tailCallCount;
+  }
+
+  /** Returns the number of calls turned into jumps that combine their value with an accumulator. */
+  public int getAccumulatedCallCount() {
+    return accumulatedCallCount;
+  }
+
+  private static int getOpcode(List<Instruction> instructions, int index) {
+    return index < instructions.size() ? instructions.get(index).getOpcode() : -1;
+  }
+
+  private static boolean isReturnAt(List<Instruction> instructions, int index) {
+    return getOpcode(instructions, index) == Code.exit
+        && getOpcode(instructions, index + 1) == Code.return_;
+  }
+
+  /**
+   * Returns the code that replaces a call of the method by a jump to its start, up to the jump: the
+   * stores of the arguments and the clearing of the locals that may be loaded before they are
+   * stored to.
+   */
+  private static List<Instruction> restart(Instruction enter, BitSet liveLocals) {
+    List<Instruction> restart = new ArrayList<>();
+    for (var parameter = enter.getOperand() - 1; parameter >= 0; parameter--) {
+      restart.add(Instruction.store(parameter));
+    }
+    for (var local = enter.getOperand(); local < enter.getOperand2(); local++) {
+      if (liveLocals.get(local)) {
+        restart.add(Instruction.loadConst(0));
+        restart.add(Instruction.store(local));
+      }
+    }
+    return restart;
+  }
+
+  private void eliminate(CodeModel codeModel, Instruction enter, BitSet liveLocals) {
+    var instructions = codeModel.getInstructions();
+    var start = instructions.indexOf(enter);
+    var end = start + 1;
+    while (end < instructions.size() && instructions.get(end).getOpcode() != Code.enter) {
+      end++;
+    }
+
+    Set<Integer> tailCalls = new HashSet<>();
+    Set<Integer> accumulatedCalls = new HashSet<>();
+    var operation = -1;
+    var hasOtherOperations = false;
+    for (var i = start + 1; i < end; i++) {
+      var instruction = instructions.get(i);
+      if (instruction.getOpcode() != Code.call || instruction.getTarget() != enter) {
+        continue;
+      }
+      var next = getOpcode(instructions, i + 1);
+      if (isReturnAt(instructions, i + 1)) {
+        tailCalls.add(i);
+      } else if ((next == Code.add || next == Code.mul) && isReturnAt(instructions, i + 2)) {
+        hasOtherOperations |= operation >= 0 && operation != next;
+        operation = next;
+        accumulatedCalls.add(i);
+      }
+    }
+    if (hasOtherOperations || enter.getOperand2() >= MAX_FRAME_SIZE) {
+      accumulatedCalls.clear();
+    }
+    if (tailCalls.isEmpty() && accumulatedCalls.isEmpty()) {
+      return;
+    }
+
+    var accumulator = enter.getOperand2();
+    var loopStart = instructions.get(start + 1);
+    // The code is changed from its end, so that the indices of what is still to be changed hold.
+    for (var i = end - 1; i > start; i--) {
+      if (tailCalls.contains(i) || accumulatedCalls.contains(i)) {
+        var replacement = restart(enter, liveLocals);
+        if (accumulatedCalls.contains(i)) {
+          replacement.add(Instruction.load(accumulator));
+          replacement.add(Instruction.of(operation));
+          replacement.add(Instruction.store(accumulator));
+          accumulatedCallCount++;
+        } else {
+          tailCallCount++;
+        }
+        // The rest of the return is left behind as unreachable code.
+        replacement.add(Instruction.jump(Code.jmp, loopStart));
+        codeModel.replace(i, 1, replacement);
+      } else if (!accumulatedCalls.isEmpty()
+          && isReturnAt(instructions, i)
+          && !tailCalls.contains(i - 1)
+          && !accumulatedCalls.contains(i - 2)) {
+        codeModel.replace(
+            i,
+            1,
+            List.of(
+                Instruction.load(accumulator),
+                Instruction.of(operation),
+                Instruction.of(Code.exit)));
+      }
+    }
+    if (!accumulatedCalls.isEmpty()) {
+      codeModel.replace(
+          start,
+          1,
+          List.of(
+              Instruction.of(Code.enter, enter.getOperand(), accumulator + 1),
+              Instruction.loadConst(operation == Code.mul ? 1 : 0),
+              Instruction.store(accumulator)));
+    }
+  }
+}
@@ -19,6 +19,7 @@
 
 package dev.askov.mjcompiler.inheritancetree;
 
+import dev.askov.mjcompiler.inheritancetree.visitor.InheritanceTreeVisitor;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -65,6 +66,29 @@ public class InheritanceTree {
     MAP.put(subclass, new InheritanceTreeNode(subclass, MAP.get(superclass)));
   }
 
+  /**
+   * Renumbers all classes in pre-order, so that every subtree gets a contiguous interval of class
+   * ids, and records the last id of every subtree.
+   */
+  public static void numberClassesInPreOrder() {
+    ROOT_NODE.accept(
+        new InheritanceTreeVisitor() {
+          private int classId = 0;
+
+          @Override
+          public void visit(InheritanceTreeNode node) {
+            if (node != ROOT_NODE) {
+              node.getClss().setLevel(classId++);
+            }
+          }
+
+          @Override
+          public void leave(InheritanceTreeNode node) {
+            node.setLastSubtreeClassId(classId - 1);
+          }
+        });
+  }
+
   public static Optional<InheritanceTreeNode> getNode(Obj clss) {
     if (clss == null || clss.getKind() != Obj.Type || clss.getType().getKind() != Struct.Class) {
       return Optional.empty();
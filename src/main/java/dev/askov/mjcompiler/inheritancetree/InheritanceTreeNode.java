@@ -20,8 +20,10 @@
 package dev.askov.mjcompiler.inheritancetree;
 
 import dev.askov.mjcompiler.inheritancetree.visitor.InheritanceTreeVisitor;
-import dev.askov.mjcompiler.vmt.VMT;
+import dev.askov.mjcompiler.vmt.DispatchTable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import rs.etf.pp1.symboltable.concepts.Obj;
@@ -36,7 +38,8 @@ public class InheritanceTreeNode {
   private final InheritanceTreeNode parent;
 
   private final Obj clss;
-  private final VMT vmt = new VMT();
+  private final DispatchTable dispatchTable = new DispatchTable();
+  private int lastSubtreeClassId;
 
   public InheritanceTreeNode(Obj clss, InheritanceTreeNode parent) {
     Objects.requireNonNull(clss, "clss");
@@ -63,8 +66,8 @@ public class InheritanceTreeNode {
     return clss;
   }
 
-  public VMT getVMT() {
-    return vmt;
+  public DispatchTable getDispatchTable() {
+    return dispatchTable;
   }
 
   public InheritanceTreeNode getParent() {
@@ -75,14 +78,42 @@ public class InheritanceTreeNode {
     return children;
   }
 
+  /** Returns the greatest class id in this node's subtree. */
+  public int getLastSubtreeClassId() {
+    return lastSubtreeClassId;
+  }
+
+  void setLastSubtreeClassId(int lastSubtreeClassId) {
+    this.lastSubtreeClassId = lastSubtreeClassId;
+  }
+
   public boolean hasChildren() {
     return !children.isEmpty();
   }
 
+  /**
+   * Visits the subtree in pre-order. The traversal keeps its own stack, so hierarchies of any
+   * depth can be visited.
+   */
   public void accept(InheritanceTreeVisitor inheritanceTreeNodeVisitor) {
+    Deque<InheritanceTreeNode> nodes = new ArrayDeque<>();
+    Deque<Integer> nextChildren = new ArrayDeque<>();
     inheritanceTreeNodeVisitor.visit(this);
-    for (var child : children) {
-      child.accept(inheritanceTreeNodeVisitor);
+    nodes.push(this);
+    nextChildren.push(0);
+    while (!nodes.isEmpty()) {
+      var node = nodes.peek();
+      int nextChild = nextChildren.pop();
+      if (nextChild < node.children.size()) {
+        nextChildren.push(nextChild + 1);
+        var child = node.children.get(nextChild);
+        inheritanceTreeNodeVisitor.visit(child);
+        nodes.push(child);
+        nextChildren.push(0);
+      } else {
+        nodes.pop();
+        inheritanceTreeNodeVisitor.leave(node);
+      }
     }
   }
 }
@@ -32,7 +32,7 @@ public class InheritanceTreePrinter implements InheritanceTreeVisitor {
         .append(node.getClss().getName())
         .append(node.getParent() != null ? " extends " + node.getParent().getClss().getName() : "")
         .append(") : ");
-    stringBuilder.append(node.getVMT()).append("\n");
+    stringBuilder.append(node.getDispatchTable()).append("\n");
   }
 
   public String getOutput() {
@@ -24,4 +24,7 @@ import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
 public interface InheritanceTreeVisitor {
 
   void visit(InheritanceTreeNode node);
+
+  /** Called after the whole subtree of the node has been visited. */
+  default void leave(InheritanceTreeNode node) {}
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.loggers;
+
+/**
+ * A single logged event, kept in the form it was reported in. The message text is only built by
+ * {@link #render()}.
+ *
+ * @author Danijel Askov
+ */
+public final class Diagnostic<T> {
+
+  private final MJLogger<T> logger;
+  private final T symbol;
+  private final Integer line;
+  private final Integer column;
+  private final Object[] context;
+
+  Diagnostic(MJLogger<T> logger, T symbol, Integer line, Integer column, Object[] context) {
+    this.logger = logger;
+    this.symbol = symbol;
+    this.line = line;
+    this.column = column;
+    this.context = context;
+  }
+
+  public MJLogger.Type getType() {
+    return logger.getType();
+  }
+
+  public Enum<?> getKind() {
+    return context.length > 0 && context[0] instanceof Enum<?> kind ? kind : null;
+  }
+
+  public T getSymbol() {
+    return symbol;
+  }
+
+  public Integer getLine() {
+    return line;
+  }
+
+  public Integer getColumn() {
+    return column;
+  }
+
+  public String render() {
+    return logger.format(symbol, line, column, context);
+  }
+
+  @Override
+  public String toString() {
+    return render();
+  }
+}
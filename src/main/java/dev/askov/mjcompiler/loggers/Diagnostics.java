@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.loggers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sink that {@link MJLogger}s record their {@link Diagnostic}s into, independently of whether the
+ * underlying logger is enabled.
+ *
+ * @author Danijel Askov
+ */
+public class Diagnostics {
+
+  private final List<Diagnostic<?>> diagnostics = new ArrayList<>();
+
+  void add(Diagnostic<?> diagnostic) {
+    diagnostics.add(diagnostic);
+  }
+
+  public List<Diagnostic<?>> getDiagnostics() {
+    return Collections.unmodifiableList(diagnostics);
+  }
+
+  public boolean contains(Enum<?> kind) {
+    for (var diagnostic : diagnostics) {
+      if (diagnostic.getKind() == kind) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isEmpty() {
+    return diagnostics.isEmpty();
+  }
+
+  public int size() {
+    return diagnostics.size();
+  }
+
+  public String render() {
+    var stringBuilder = new StringBuilder();
+    for (var diagnostic : diagnostics) {
+      stringBuilder.append(diagnostic.render()).append("\n");
+    }
+    return stringBuilder.toString();
+  }
+}
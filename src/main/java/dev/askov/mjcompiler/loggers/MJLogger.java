@@ -35,25 +35,51 @@ public abstract class MJLogger<T> {
   protected final Logger log = LoggerFactory.getLogger(getClass());
   private final Type type;
   protected final String messageHead;
+  private Diagnostics diagnostics;
 
   public MJLogger(Type type, String messageHead) {
     this.type = type;
     this.messageHead = messageHead;
   }
 
+  public Type getType() {
+    return type;
+  }
+
+  public void setDiagnostics(Diagnostics diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
   protected abstract String messageBody(T loggedObject, Object... context);
 
-  public final void log(T loggedObject, Integer line, Integer column, Object... context) {
+  public boolean isEnabled() {
+    return switch (type) {
+      case INFO_LOGGER -> log.isInfoEnabled();
+      case ERROR_LOGGER -> log.isErrorEnabled();
+    };
+  }
+
+  final String format(T loggedObject, Integer line, Integer column, Object... context) {
     var head = String.format("%-14s", this.messageHead);
     var location =
         line != null
             ? String.format(
                 " (line %3d%s)", line, column != null ? String.format(", column %3d", column) : "")
             : "";
-    var body = this.messageBody(loggedObject, context);
+    return head + location + ": " + this.messageBody(loggedObject, context) + ".";
+  }
+
+  public final void log(T loggedObject, Integer line, Integer column, Object... context) {
+    if (diagnostics != null) {
+      diagnostics.add(new Diagnostic<>(this, loggedObject, line, column, context));
+    }
+    if (!isEnabled()) {
+      return;
+    }
+    var message = format(loggedObject, line, column, context);
     switch (this.type) {
-      case INFO_LOGGER -> log.info("{}{}: {}.", head, location, body);
-      case ERROR_LOGGER -> log.error("{}{}: {}.", head, location, body);
+      case INFO_LOGGER -> log.info("{}", message);
+      case ERROR_LOGGER -> log.error("{}", message);
     }
   }
 }
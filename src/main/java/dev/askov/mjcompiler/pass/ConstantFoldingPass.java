@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.CodeGenerator;
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.ConstantFolder;
+
+/**
+ * Evaluates constant expressions and conditions at compile time and removes the branches that
+ * constant conditions never select. Runs before tree shaking, so that methods only called from
+ * dead branches are removed as well.
+ *
+ * @author Danijel Askov
+ */
+public class ConstantFoldingPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "constant-folding";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void beforeCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    var constantFolder = ConstantFolder.fold(compilation.getProgram());
+    compilation.setConstantFolder(constantFolder);
+    statistics.add("operations folded", constantFolder.getFoldedOperationCount());
+    statistics.add("constant conditions", constantFolder.getConstantConditionCount());
+  }
+
+  @Override
+  public void configure(Compilation compilation, CodeGenerator codeGenerator) {
+    compilation.getConstantFolder().ifPresent(codeGenerator::foldConstants);
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    statistics.add("dead code bytes removed", compilation.getCodeGenerator().getDeadCodeSize());
+  }
+}
@@ -17,18 +17,34 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package dev.askov.mjcompiler.vmt;
+package dev.askov.mjcompiler.pass;
 
-import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
-import dev.askov.mjcompiler.inheritancetree.visitor.InheritanceTreeVisitor;
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.bytecode.DeadStoreEliminator;
 
 /**
+ * Removes stores to local variables whose value is never loaded (see {@link DeadStoreEliminator}).
+ *
  * @author Danijel Askov
  */
-public class VMTCodeGenerator implements InheritanceTreeVisitor {
+public class DeadStoreEliminationPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "dead-store-elimination";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
 
   @Override
-  public void visit(InheritanceTreeNode node) {
-    node.getVMT().generateCreationCode();
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    compilation
+        .getCodeModel()
+        .ifPresent(
+            codeModel ->
+                statistics.add("stores removed", DeadStoreEliminator.eliminate(codeModel)));
   }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.CodeGenerator;
+import dev.askov.mjcompiler.Compilation;
+
+/**
+ * Binds a virtual call statically if every class its receiver can belong to calls the same
+ * method (class hierarchy analysis; with tree shaking, only instantiated classes count).
+ *
+ * @author Danijel Askov
+ */
+public class DevirtualizationPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "devirtualize";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void configure(Compilation compilation, CodeGenerator codeGenerator) {
+    codeGenerator.devirtualizeMonomorphicCalls();
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    var codeGenerator = compilation.getCodeGenerator();
+    statistics.add("virtual call sites", codeGenerator.getVirtualCallCount());
+    statistics.add("call sites devirtualized", codeGenerator.getDevirtualizedCallCount());
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.bytecode.Inliner;
+
+/**
+ * Replaces calls of small methods, including the virtual calls that have been devirtualized, by
+ * the code of the called method (see {@link Inliner}). Enabled at {@code -O2} only, since code
+ * grows with every copy. Runs before the other passes that rewrite the code, which clean up after
+ * it.
+ *
+ * @author Danijel Askov
+ */
+public class InliningPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "inline";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 2;
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    compilation
+        .getCodeModel()
+        .ifPresent(
+            codeModel -> {
+              var inliner =
+                  Inliner.inline(codeModel, compilation.getCodeGenerator().getMainPc());
+              statistics.add("call sites inlined", inliner.getInlinedCallCount());
+              statistics.add("methods removed", inliner.getRemovedMethodCount());
+            });
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.bytecode.LocalAllocator;
+
+/**
+ * Lets local variables that are never live at the same time share a slot and gives the most used
+ * ones the slots with short loads and stores (see {@link LocalAllocator}). Runs last, after the
+ * passes that add or remove locals.
+ *
+ * @author Danijel Askov
+ */
+public class LocalAllocationPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "allocate-locals";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    compilation
+        .getCodeModel()
+        .ifPresent(
+            codeModel -> {
+              var localAllocator = LocalAllocator.allocate(codeModel);
+              statistics.add("frame slots saved", localAllocator.getSavedSlotCount());
+              statistics.add("locals moved", localAllocator.getMovedLocalCount());
+            });
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.CodeGenerator;
+import dev.askov.mjcompiler.Compilation;
+
+/**
+ * Optional step of a {@link Compilation}, run by a {@link PassManager}. A pass can analyze or
+ * transform the program before its code is generated, configure the code generator, and work on
+ * the generated code. It is enabled from its optimization level on, unless it is toggled by name.
+ *
+ * @author Danijel Askov
+ */
+public interface Pass {
+
+  /** Returns the name the pass is toggled by ({@code -f<name>} and {@code -fno-<name>}). */
+  String getName();
+
+  /** Returns the lowest optimization level the pass is enabled at by default. */
+  int getOptimizationLevel();
+
+  /** Called once classes have been numbered, before code generation starts. */
+  default void beforeCodeGeneration(Compilation compilation, PassStatistics statistics) {}
+
+  default void configure(Compilation compilation, CodeGenerator codeGenerator) {}
+
+  /** Called once the code of all methods has been generated, before the entry point. */
+  default void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.CodeGenerator;
+import dev.askov.mjcompiler.Compilation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the enabled passes of a compilation in the order they have been registered in, timing
+ * every pass and collecting its statistics.
+ *
+ * <p>At {@code -O0} (the default) no pass is enabled, so the code is exactly what the code
+ * generator emits. {@code -O1} enables the passes that pay off for every program; {@code -O2} adds
+ * the ones that cost more compile time or code size.
+ *
+ * @author Danijel Askov
+ */
+public class PassManager {
+
+  public static final int MAX_OPTIMIZATION_LEVEL = 2;
+  public static final int DEFAULT_OPTIMIZATION_LEVEL = 0;
+
+  private final List<Pass> passes = new ArrayList<>();
+  private final Map<String, Boolean> toggles = new HashMap<>();
+  private final Map<Pass, PassStatistics> statistics = new LinkedHashMap<>();
+  private int optimizationLevel = DEFAULT_OPTIMIZATION_LEVEL;
+
+  /** Returns a pass manager with all of the compiler's passes registered. */
+  public static PassManager create() {
+    var passManager = new PassManager();
+    passManager.register(new ConstantFoldingPass());
+    passManager.register(new VectorFusionPass());
+    passManager.register(new VectorLoopUnrollingPass());
+    passManager.register(new TreeShakingPass());
+    passManager.register(new DevirtualizationPass());
+    passManager.register(new TailCallEliminationPass());
+    passManager.register(new InliningPass());
+    passManager.register(new StrengthReductionPass());
+    passManager.register(new DeadStoreEliminationPass());
+    passManager.register(new PeepholePass());
+    passManager.register(new LocalAllocationPass());
+    return passManager;
+  }
+
+  public void register(Pass pass) {
+    passes.add(pass);
+  }
+
+  public void setOptimizationLevel(int optimizationLevel) {
+    if (optimizationLevel < 0 || optimizationLevel > MAX_OPTIMIZATION_LEVEL) {
+      throw new IllegalArgumentException("Unknown optimization level " + optimizationLevel);
+    }
+    this.optimizationLevel = optimizationLevel;
+  }
+
+  public int getOptimizationLevel() {
+    return optimizationLevel;
+  }
+
+  /**
+   * Enables or disables the pass regardless of the optimization level.
+   *
+   * @return {@code false} if there is no pass with the given name
+   */
+  public boolean toggle(String name, boolean enabled) {
+    for (var pass : passes) {
+      if (pass.getName().equals(name)) {
+        toggles.put(name, enabled);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isEnabled(Pass pass) {
+    return toggles.getOrDefault(pass.getName(), pass.getOptimizationLevel() <= optimizationLevel);
+  }
+
+  public List<Pass> getPasses() {
+    return List.copyOf(passes);
+  }
+
+  private PassStatistics statisticsOf(Pass pass) {
+    return statistics.computeIfAbsent(pass, p -> new PassStatistics());
+  }
+
+  public void runBeforeCodeGeneration(Compilation compilation) {
+    for (var pass : passes) {
+      if (isEnabled(pass)) {
+        var passStatistics = statisticsOf(pass);
+        var start = System.nanoTime();
+        pass.beforeCodeGeneration(compilation, passStatistics);
+        passStatistics.addElapsedNanos(System.nanoTime() - start);
+      }
+    }
+  }
+
+  public void configure(Compilation compilation, CodeGenerator codeGenerator) {
+    for (var pass : passes) {
+      if (isEnabled(pass)) {
+        pass.configure(compilation, codeGenerator);
+      }
+    }
+  }
+
+  public void runAfterCodeGeneration(Compilation compilation) {
+    for (var pass : passes) {
+      if (isEnabled(pass)) {
+        var passStatistics = statisticsOf(pass);
+        var start = System.nanoTime();
+        pass.afterCodeGeneration(compilation, passStatistics);
+        passStatistics.addElapsedNanos(System.nanoTime() - start);
+      }
+    }
+  }
+
+  /** Returns the statistics of the named pass, which are empty if the pass has not run. */
+  public PassStatistics getStatistics(String name) {
+    for (var entry : statistics.entrySet()) {
+      if (entry.getKey().getName().equals(name)) {
+        return entry.getValue();
+      }
+    }
+    return new PassStatistics();
+  }
+
+  /** Returns one line per pass that has run, with its time and statistics. */
+  public String getReport() {
+    var stringBuilder = new StringBuilder();
+    for (var entry : statistics.entrySet()) {
+      stringBuilder
+          .append(entry.getKey().getName())
+          .append(": ")
+          .append(entry.getValue())
+          .append("\n");
+    }
+    return stringBuilder.toString();
+  }
+}
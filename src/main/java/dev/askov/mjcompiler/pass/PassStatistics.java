@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time spent in a single pass and the counts of its effects (e.g. removed methods or saved bytes),
+ * in the order they have been first reported in.
+ *
+ * @author Danijel Askov
+ */
+public class PassStatistics {
+
+  private long elapsedNanos;
+  private final Map<String, Long> counts = new LinkedHashMap<>();
+
+  void addElapsedNanos(long nanos) {
+    elapsedNanos += nanos;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public void add(String effect, long count) {
+    counts.merge(effect, count, Long::sum);
+  }
+
+  public long getCount(String effect) {
+    return counts.getOrDefault(effect, 0L);
+  }
+
+  @Override
+  public String toString() {
+    var stringBuilder = new StringBuilder(String.format("%.3f ms", elapsedNanos / 1e6));
+    for (var entry : counts.entrySet()) {
+      stringBuilder.append(", ").append(entry.getKey()).append(": ").append(entry.getValue());
+    }
+    return stringBuilder.toString();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.bytecode.PeepholeOptimizer;
+
+/**
+ * Rewrites the generated code with a {@link PeepholeOptimizer}. Code that can't be decoded is left
+ * as it is.
+ *
+ * @author Danijel Askov
+ */
+public class PeepholePass implements Pass {
+
+  @Override
+  public String getName() {
+    return "peephole";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    compilation
+        .getCodeModel()
+        .ifPresent(
+            codeModel -> {
+              var codeSize = codeModel.getSize();
+              var instructionCount = codeModel.getInstructions().size();
+              var peepholeOptimizer = PeepholeOptimizer.optimize(codeModel);
+              statistics.add("bytes saved", codeSize - codeModel.getSize());
+              statistics.add(
+                  "instructions removed", instructionCount - codeModel.getInstructions().size());
+              statistics.add("jumps threaded", peepholeOptimizer.getThreadedJumpCount());
+              statistics.add(
+                  "unreachable instructions", peepholeOptimizer.getUnreachableInstructionCount());
+              statistics.add("sequences rewritten", peepholeOptimizer.getRewriteCount());
+            });
+  }
+}
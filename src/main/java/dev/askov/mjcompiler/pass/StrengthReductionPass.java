@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.bytecode.StrengthReducer;
+
+/**
+ * Replaces multiplications in loops by additions and multiplications by a power of two by shifts
+ * (see {@link StrengthReducer}).
+ *
+ * @author Danijel Askov
+ */
+public class StrengthReductionPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "strength-reduction";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    compilation
+        .getCodeModel()
+        .ifPresent(
+            codeModel -> {
+              var strengthReducer = StrengthReducer.reduce(codeModel);
+              statistics.add(
+                  "induction variables introduced", strengthReducer.getInductionVariableCount());
+              statistics.add(
+                  "loop multiplications removed", strengthReducer.getLoopMultiplicationCount());
+              statistics.add("multiplications shifted", strengthReducer.getShiftCount());
+            });
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.bytecode.TailCallEliminator;
+
+/**
+ * Turns the recursive calls of a method that are in tail position, or whose value is only added to
+ * or multiplied by before it is returned, into a loop (see {@link TailCallEliminator}). Runs
+ * before inlining, since a method that no longer calls itself may be inlined.
+ *
+ * @author Danijel Askov
+ */
+public class TailCallEliminationPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "tail-calls";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    compilation
+        .getCodeModel()
+        .ifPresent(
+            codeModel -> {
+              var tailCallEliminator = TailCallEliminator.eliminate(codeModel);
+              statistics.add("tail calls eliminated", tailCallEliminator.getTailCallCount());
+              statistics.add(
+                  "accumulated calls eliminated", tailCallEliminator.getAccumulatedCallCount());
+            });
+  }
+}
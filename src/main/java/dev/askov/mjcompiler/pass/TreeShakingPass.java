@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.ReachabilityAnalyzer;
+
+/**
+ * Removes the methods that are unreachable from main and the dispatch cases of the classes that
+ * are never instantiated (see {@link ReachabilityAnalyzer}).
+ *
+ * @author Danijel Askov
+ */
+public class TreeShakingPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "tree-shaking";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void beforeCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    var reachabilityAnalyzer =
+        ReachabilityAnalyzer.analyze(
+            compilation.getProgram(),
+            compilation.getConstantFolder().orElse(null),
+            compilation.getVectorFusion().orElse(null));
+    compilation.setReachabilityAnalyzer(reachabilityAnalyzer);
+    statistics.add(
+        "methods removed",
+        reachabilityAnalyzer.getMethodCount() - reachabilityAnalyzer.getReachableMethodCount());
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    statistics.add("bytes removed", compilation.getCodeGenerator().getDiscardedCodeSize());
+  }
+}
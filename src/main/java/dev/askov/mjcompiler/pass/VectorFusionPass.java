@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.CodeGenerator;
+import dev.askov.mjcompiler.Compilation;
+import dev.askov.mjcompiler.VectorFusion;
+
+/**
+ * Computes every vector expression of two or more operations by a single loop, which allocates
+ * only the array of the result (see {@link VectorFusion}). Runs before tree shaking, so that
+ * helper methods only used by fused expressions are removed.
+ *
+ * @author Danijel Askov
+ */
+public class VectorFusionPass implements Pass {
+
+  @Override
+  public String getName() {
+    return "vector-fusion";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 1;
+  }
+
+  @Override
+  public void beforeCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    var vectorFusion =
+        VectorFusion.fuse(compilation.getProgram(), compilation.getConstantFolder().orElse(null));
+    compilation.setVectorFusion(vectorFusion);
+    statistics.add("expressions fused", vectorFusion.getFusedExpressionCount());
+    statistics.add("operations fused", vectorFusion.getFusedOperationCount());
+    statistics.add("intermediate arrays avoided", vectorFusion.getIntermediateArrayCount());
+  }
+
+  @Override
+  public void configure(Compilation compilation, CodeGenerator codeGenerator) {
+    compilation.getVectorFusion().ifPresent(codeGenerator::fuseVectorExpressions);
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    statistics.add("loops generated", compilation.getCodeGenerator().getVectorKernelCount());
+  }
+}
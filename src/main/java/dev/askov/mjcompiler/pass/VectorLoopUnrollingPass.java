@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import dev.askov.mjcompiler.CodeGenerator;
+import dev.askov.mjcompiler.Compilation;
+
+/**
+ * Unrolls the loops of the vector helper methods and of fused vector expressions, so that the
+ * loop test is executed once per {@value #UNROLL_FACTOR} elements. Enabled at {@code -O2} only,
+ * since every loop grows by {@value #UNROLL_FACTOR} copies of its body.
+ *
+ * @author Danijel Askov
+ */
+public class VectorLoopUnrollingPass implements Pass {
+
+  public static final int UNROLL_FACTOR = 4;
+
+  @Override
+  public String getName() {
+    return "unroll-vector-loops";
+  }
+
+  @Override
+  public int getOptimizationLevel() {
+    return 2;
+  }
+
+  @Override
+  public void configure(Compilation compilation, CodeGenerator codeGenerator) {
+    codeGenerator.unrollVectorLoops(UNROLL_FACTOR);
+  }
+
+  @Override
+  public void afterCodeGeneration(Compilation compilation, PassStatistics statistics) {
+    statistics.add("loops unrolled", compilation.getCodeGenerator().getUnrolledVectorLoopCount());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.symboltable;
+
+import java.util.Collection;
+import java.util.Collections;
+import rs.etf.pp1.symboltable.concepts.Obj;
+import rs.etf.pp1.symboltable.concepts.Scope;
+import rs.etf.pp1.symboltable.structure.SymbolDataStructure;
+
+/**
+ * Scope whose locals are stored in an {@link OpenAddressingDataStructure}.
+ *
+ * @author Danijel Askov
+ */
+public class MJScope extends Scope {
+
+  private OpenAddressingDataStructure locals;
+  private int nVars = 0;
+
+  public MJScope(Scope outer) {
+    super(outer);
+  }
+
+  public MJScope(Scope outer, OpenAddressingDataStructure sharedLocals) {
+    super(outer);
+    locals = new OpenAddressingDataStructure(sharedLocals);
+  }
+
+  @Override
+  public boolean addToLocals(Obj o) {
+    if (locals == null) {
+      locals = new OpenAddressingDataStructure();
+    }
+    var isOK = locals.insertKey(o);
+    if (isOK && (o.getKind() == Obj.Var || o.getKind() == Obj.Fld)) {
+      o.setAdr(nVars++);
+    }
+    return isOK;
+  }
+
+  @Override
+  public Obj findSymbol(String objName) {
+    return (locals != null) ? locals.searchKey(objName) : null;
+  }
+
+  @Override
+  public int getnVars() {
+    return nVars;
+  }
+
+  @Override
+  public SymbolDataStructure getLocals() {
+    return locals;
+  }
+
+  @Override
+  public Collection<Obj> values() {
+    return (locals != null) ? locals.symbols() : Collections.emptyList();
+  }
+}
@@ -68,8 +68,61 @@ public class MJTab extends Tab {
 
   private static int classId = 0;
 
+  private static int currentLevel;
+
+  private static final OpenAddressingDataStructure UNIVERSE = createUniverse();
+
+  /**
+   * Opens a fresh universe scope layered over the shared predeclared symbols. Symbols inserted
+   * into the universe scope during a compilation (e.g. the program name) stay in that compilation's
+   * own table. The helper methods are shared too, but the code generator gives each compilation
+   * its own copy of their code, so their addresses are cleared along with the class table.
+   */
   public static void init() {
-    Tab.init();
+    currentScope = new MJScope(null, UNIVERSE);
+    currentLevel = -1;
+    for (var helperMethod :
+        List.of(
+            printBoolMethod,
+            readBoolMethod,
+            vecTimesVecMethod,
+            vecTimesScalarMethod,
+            scalarTimesVecMethod,
+            vecPlusVecMethod)) {
+      helperMethod.setAdr(0);
+    }
+    CLASS_OBJS.clear();
+    classId = 0;
+  }
+
+  private static OpenAddressingDataStructure createUniverse() {
+    currentScope = new MJScope(null);
+
+    currentScope.addToLocals(new Obj(Obj.Type, "int", intType));
+    currentScope.addToLocals(new Obj(Obj.Type, "char", charType));
+    currentScope.addToLocals(new Obj(Obj.Con, "eol", charType, 10, 0));
+    currentScope.addToLocals(new Obj(Obj.Con, "null", nullType, 0, 0));
+    currentScope.addToLocals(chrMethod = chrObj = new Obj(Obj.Meth, CHR, charType, 0, 1));
+    {
+      openScope();
+      currentScope.addToLocals(new Obj(Obj.Var, "i", intType, 0, 1));
+      chrMethod.setLocals(currentScope.getLocals());
+      closeScope();
+    }
+    currentScope.addToLocals(ordMethod = ordObj = new Obj(Obj.Meth, ORD, intType, 0, 1));
+    {
+      openScope();
+      currentScope.addToLocals(new Obj(Obj.Var, "ch", charType, 0, 1));
+      ordMethod.setLocals(currentScope.getLocals());
+      closeScope();
+    }
+    currentScope.addToLocals(lenMethod = lenObj = new Obj(Obj.Meth, LEN, intType, 0, 1));
+    {
+      openScope();
+      currentScope.addToLocals(new Obj(Obj.Var, "arr", new Struct(Struct.Array, noType), 0, 1));
+      lenMethod.setLocals(currentScope.getLocals());
+      closeScope();
+    }
     currentScope.addToLocals(new Obj(Obj.Type, "bool", BOOL_TYPE));
     currentScope.addToLocals(printBoolMethod = new Obj(Obj.Meth, PRINT_BOOL, noType, 0, 2));
     {
@@ -91,9 +144,6 @@ public class MJTab extends Tab {
       readBoolMethod.setLocals(currentScope.getLocals());
       closeScope();
     }
-    lenMethod = currentScope.findSymbol(LEN);
-    ordMethod = currentScope.findSymbol(ORD);
-    chrMethod = currentScope.findSymbol(CHR);
     currentScope.addToLocals(vecTimesVecMethod = new Obj(Obj.Meth, VEC_TIMES_VEC, intType, 0, 2));
     {
       openScope();
@@ -145,9 +195,25 @@ public class MJTab extends Tab {
       scalarTimesVecMethod.setLocals(currentScope.getLocals());
       closeScope();
     }
+    var universe = (OpenAddressingDataStructure) currentScope.getLocals();
+    currentScope = null;
+    return universe;
+  }
+
+  public static void openScope() {
+    currentScope = new MJScope(currentScope);
+    currentLevel++;
+  }
+
+  public static void closeScope() {
+    currentScope = currentScope.getOuter();
+    currentLevel--;
   }
 
   public static void dump(MJDumpSymbolTableVisitor mjSymbolTableVisitor, Logger logger) {
+    if (!logger.isInfoEnabled()) {
+      return;
+    }
     if (mjSymbolTableVisitor == null) {
       mjSymbolTableVisitor = new MJDumpSymbolTableVisitor(true);
     }
@@ -162,7 +228,11 @@ public class MJTab extends Tab {
   }
 
   public static Obj insert(int kind, String name, Struct type) {
-    var result = Tab.insert(kind, name, type);
+    var result = new Obj(kind, name, type, 0, (currentLevel != 0) ? 1 : 0);
+    if (!currentScope.addToLocals(result)) {
+      var existing = currentScope.findSymbol(name);
+      result = (existing != null) ? existing : noObj;
+    }
     if (kind == Obj.Type && type.getKind() == Struct.Class) {
       CLASS_OBJS.put(type, result);
     }
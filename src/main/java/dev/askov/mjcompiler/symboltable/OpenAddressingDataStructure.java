@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.symboltable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import rs.etf.pp1.symboltable.concepts.Obj;
+import rs.etf.pp1.symboltable.structure.SymbolDataStructure;
+
+/**
+ * Symbol table of a single scope. Symbols are kept inline in insertion order (method signatures
+ * depend on it), and a linear-probing index of entry positions is used for lookups. The cached
+ * {@link String#hashCode()} of each name is stored next to its index slot, so a probe only calls
+ * {@link String#equals(Object)} on a full hash match.
+ *
+ * <p>A table can be layered over a shared table that it never modifies. The shared symbols are
+ * listed first and their names can't be inserted again; deleting one of them first copies all
+ * shared symbols into this table.
+ *
+ * @author Danijel Askov
+ */
+public class OpenAddressingDataStructure extends SymbolDataStructure {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private Obj[] entries = new Obj[INITIAL_CAPACITY];
+  private int size;
+
+  /* Index slots hold (entry position + 1); 0 marks an empty slot. Capacity is a power of two. */
+  private int[] slots = new int[INITIAL_CAPACITY * 2];
+  private int[] hashes = new int[INITIAL_CAPACITY * 2];
+
+  private OpenAddressingDataStructure shared;
+
+  private final Collection<Obj> symbols =
+      new AbstractList<>() {
+        @Override
+        public Obj get(int index) {
+          var sharedSize = sharedSize();
+          if (index < 0 || index >= sharedSize + size) {
+            throw new IndexOutOfBoundsException(index);
+          }
+          return index < sharedSize ? shared.entries[index] : entries[index - sharedSize];
+        }
+
+        @Override
+        public int size() {
+          return sharedSize() + size;
+        }
+      };
+
+  public OpenAddressingDataStructure() {}
+
+  public OpenAddressingDataStructure(OpenAddressingDataStructure shared) {
+    this.shared = shared;
+  }
+
+  private int sharedSize() {
+    return shared != null ? shared.size : 0;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private int indexOf(String key, int hash) {
+    var mask = slots.length - 1;
+    for (var i = spread(hash) & mask; slots[i] != 0; i = (i + 1) & mask) {
+      if (hashes[i] == hash) {
+        var name = entries[slots[i] - 1].getName();
+        if (name == key || name.equals(key)) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private void index(int entry, int hash) {
+    var mask = slots.length - 1;
+    var i = spread(hash) & mask;
+    while (slots[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    slots[i] = entry + 1;
+    hashes[i] = hash;
+  }
+
+  private void rebuildIndex(int capacity) {
+    slots = new int[capacity];
+    hashes = new int[capacity];
+    for (var i = 0; i < size; i++) {
+      index(i, entries[i].getName().hashCode());
+    }
+  }
+
+  private void copySharedSymbols() {
+    var ownEntries = Arrays.copyOf(entries, size);
+    var sharedEntries = shared.entries;
+    var sharedSize = shared.size;
+    shared = null;
+    entries = new Obj[INITIAL_CAPACITY];
+    size = 0;
+    rebuildIndex(INITIAL_CAPACITY * 2);
+    for (var i = 0; i < sharedSize; i++) {
+      insertKey(sharedEntries[i]);
+    }
+    for (var obj : ownEntries) {
+      insertKey(obj);
+    }
+  }
+
+  @Override
+  public Obj searchKey(String key) {
+    var i = indexOf(key, key.hashCode());
+    if (i >= 0) {
+      return entries[slots[i] - 1];
+    }
+    return shared != null ? shared.searchKey(key) : null;
+  }
+
+  @Override
+  public boolean deleteKey(String key) {
+    var i = indexOf(key, key.hashCode());
+    if (i < 0) {
+      if (shared == null || shared.searchKey(key) == null) {
+        return false;
+      }
+      copySharedSymbols();
+      i = indexOf(key, key.hashCode());
+    }
+    var entry = slots[i] - 1;
+    System.arraycopy(entries, entry + 1, entries, entry, size - entry - 1);
+    entries[--size] = null;
+    rebuildIndex(slots.length);
+    return true;
+  }
+
+  @Override
+  public boolean insertKey(Obj node) {
+    var name = node.getName();
+    var hash = name.hashCode();
+    if (indexOf(name, hash) >= 0 || (shared != null && shared.searchKey(name) != null)) {
+      return false;
+    }
+    if (size == entries.length) {
+      entries = Arrays.copyOf(entries, size * 2);
+      rebuildIndex(slots.length * 2);
+    }
+    entries[size] = node;
+    index(size++, hash);
+    return true;
+  }
+
+  @Override
+  public Collection<Obj> symbols() {
+    return symbols;
+  }
+
+  @Override
+  public int numSymbols() {
+    return sharedSize() + size;
+  }
+
+  @Override
+  public String toString() {
+    var stringBuilder = new StringBuilder();
+    for (var symbol : symbols) {
+      stringBuilder.append(symbol).append("\n");
+    }
+    return stringBuilder.toString();
+  }
+}
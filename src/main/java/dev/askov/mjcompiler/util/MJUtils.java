@@ -19,8 +19,13 @@
 
 package dev.askov.mjcompiler.util;
 
+import dev.askov.mjcompiler.ast.NonEmptyDeclList;
+import dev.askov.mjcompiler.ast.Program;
+import dev.askov.mjcompiler.ast.Visitor;
 import dev.askov.mjcompiler.methodsignature.ClassMethodSignature;
 import dev.askov.mjcompiler.symboltable.MJTab;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.OptionalInt;
 import rs.etf.pp1.symboltable.concepts.Obj;
@@ -33,6 +38,31 @@ public final class MJUtils {
 
   private MJUtils() {}
 
+  /**
+   * Visits the program in the same order as {@link Program#traverseBottomUp}, but walks the list of
+   * declarations with a loop. The generated traversal recurses once per element of a list, and the
+   * declaration list grows with every class and global of the program. The lists inside a class
+   * or a method are still traversed recursively.
+   */
+  public static void traverseBottomUp(Program program, Visitor visitor) {
+    program.getProgramName().traverseBottomUp(visitor);
+    Deque<NonEmptyDeclList> declLists = new ArrayDeque<>();
+    var declList = program.getDeclList();
+    while (declList instanceof NonEmptyDeclList nonEmptyDeclList) {
+      declLists.push(nonEmptyDeclList);
+      declList = nonEmptyDeclList.getDeclList();
+    }
+    declList.traverseBottomUp(visitor);
+    while (!declLists.isEmpty()) {
+      var nonEmptyDeclList = declLists.pop();
+      nonEmptyDeclList.getDecl().traverseBottomUp(visitor);
+      nonEmptyDeclList.accept(visitor);
+    }
+    program.getMethodDeclList().traverseBottomUp(visitor);
+    program.getProgramEnd().traverseBottomUp(visitor);
+    program.accept(visitor);
+  }
+
   public static boolean haveSameSignatures(Obj method1, Obj method2) {
     if (method1 == null
         || method2 == null
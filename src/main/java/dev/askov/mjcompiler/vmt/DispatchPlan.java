@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.vmt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * Targets of a single overridable signature, as a list of disjoint class-id ranges sorted by
+ * class id. Every class whose object can end up in one of the ranges calls the range's target.
+ *
+ * @author Danijel Askov
+ */
+public class DispatchPlan {
+
+  public static class Range {
+
+    private final int firstClassId;
+    private int lastClassId;
+    private final Obj target;
+
+    private Range(int firstClassId, int lastClassId, Obj target) {
+      this.firstClassId = firstClassId;
+      this.lastClassId = lastClassId;
+      this.target = target;
+    }
+
+    public int getFirstClassId() {
+      return firstClassId;
+    }
+
+    public int getLastClassId() {
+      return lastClassId;
+    }
+
+    public Obj getTarget() {
+      return target;
+    }
+  }
+
+  private final List<Range> ranges = new ArrayList<>();
+
+  /**
+   * Adds a class to the plan. Classes have to be added in increasing class-id order. A class with
+   * the same target as the previously added one extends its range over the classes in between,
+   * which are left out of the plan because none of their objects can be a receiver.
+   */
+  void add(int classId, Obj target) {
+    if (!ranges.isEmpty()) {
+      var last = ranges.get(ranges.size() - 1);
+      if (last.target == target) {
+        last.lastClassId = classId;
+        return;
+      }
+    }
+    ranges.add(new Range(classId, classId, target));
+  }
+
+  public List<Range> getRanges() {
+    return Collections.unmodifiableList(ranges);
+  }
+
+  /** Returns the ranges restricted to the given class-id interval. */
+  public List<Range> getRanges(int firstClassId, int lastClassId) {
+    List<Range> result = new ArrayList<>();
+    for (var range : ranges) {
+      if (range.lastClassId >= firstClassId && range.firstClassId <= lastClassId) {
+        result.add(
+            new Range(
+                Math.max(range.firstClassId, firstClassId),
+                Math.min(range.lastClassId, lastClassId),
+                range.target));
+      }
+    }
+    return result;
+  }
+}
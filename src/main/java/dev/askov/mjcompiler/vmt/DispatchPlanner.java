@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.vmt;
+
+import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
+import dev.askov.mjcompiler.inheritancetree.visitor.InheritanceTreeVisitor;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * Collects the dispatch tables of all classes and builds one {@link DispatchPlan} per overridable
+ * signature. Plans are built on first use and cached, so every call site of a signature shares one
+ * plan.
+ *
+ * <p>Restricting a plan to the subtree of a receiver's static type is a class hierarchy analysis:
+ * if the restricted plan has a single range, no subclass of the static type overrides the method
+ * and the call can be bound statically.
+ *
+ * <p>Only the classes accepted by the planner's filter (e.g. the instantiated ones) take part in
+ * the plans. No object of any other class exists at run time, so the ranges are free to span them.
+ *
+ * @author Danijel Askov
+ */
+public class DispatchPlanner implements InheritanceTreeVisitor {
+
+  private final Predicate<InheritanceTreeNode> filter;
+  private final Map<String, TreeMap<Integer, Obj>> targets = new HashMap<>();
+  private final Map<String, DispatchPlan> plans = new HashMap<>();
+  private final Map<InheritanceTreeNode, Map<String, List<DispatchPlan.Range>>> receiverRanges =
+      new HashMap<>();
+
+  private DispatchPlanner(Predicate<InheritanceTreeNode> filter) {
+    this.filter = filter;
+  }
+
+  public static DispatchPlanner plan(InheritanceTreeNode root) {
+    return plan(root, node -> true);
+  }
+
+  public static DispatchPlanner plan(
+      InheritanceTreeNode root, Predicate<InheritanceTreeNode> filter) {
+    var dispatchPlanner = new DispatchPlanner(filter);
+    root.accept(dispatchPlanner);
+    return dispatchPlanner;
+  }
+
+  @Override
+  public void visit(InheritanceTreeNode node) {
+    if (node.equals(InheritanceTree.ROOT_NODE)) {
+      return;
+    }
+    var classId = node.getClss().getLevel();
+    if (!filter.test(node)) {
+      return;
+    }
+    for (var method : node.getDispatchTable().getMethods()) {
+      targets
+          .computeIfAbsent(DispatchTable.signatureOf(method), signature -> new TreeMap<>())
+          .put(classId, method);
+    }
+  }
+
+  public Optional<DispatchPlan> getPlan(Obj overriddenMethod) {
+    var signature = DispatchTable.signatureOf(overriddenMethod);
+    var plan = plans.get(signature);
+    if (plan == null) {
+      var classTargets = targets.get(signature);
+      if (classTargets == null) {
+        return Optional.empty();
+      }
+      plan = new DispatchPlan();
+      for (var entry : classTargets.entrySet()) {
+        plan.add(entry.getKey(), entry.getValue());
+      }
+      plans.put(signature, plan);
+    }
+    return Optional.of(plan);
+  }
+
+  /**
+   * Returns the ranges of the method's plan that a receiver of the given static type can fall
+   * into. The ranges cover the static type's subtree without gaps.
+   */
+  public List<DispatchPlan.Range> getRanges(
+      Obj overriddenMethod, InheritanceTreeNode receiverTypeNode) {
+    return receiverRanges
+        .computeIfAbsent(receiverTypeNode, node -> new HashMap<>())
+        .computeIfAbsent(
+            DispatchTable.signatureOf(overriddenMethod),
+            signature ->
+                getPlan(overriddenMethod)
+                    .map(
+                        plan ->
+                            plan.getRanges(
+                                receiverTypeNode.getClss().getLevel(),
+                                receiverTypeNode.getLastSubtreeClassId()))
+                    .orElse(List.of()));
+  }
+}
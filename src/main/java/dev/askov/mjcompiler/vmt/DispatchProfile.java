@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.vmt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Receiver counts of virtual call sites, as printed by a program compiled with dispatch
+ * instrumentation. Every counter is printed as {@code #<counter> <count>}; the rest of the
+ * program's output is ignored, so the complete output of the VM can be used as a profile.
+ *
+ * @author Danijel Askov
+ */
+public class DispatchProfile {
+
+  private static final Pattern COUNTER = Pattern.compile("#(\\d+) (\\d+)");
+
+  private final Map<Integer, Long> counts = new HashMap<>();
+
+  public static DispatchProfile parse(String output) {
+    var profile = new DispatchProfile();
+    var matcher = COUNTER.matcher(output);
+    while (matcher.find()) {
+      profile.counts.merge(
+          Integer.parseInt(matcher.group(1)), Long.parseLong(matcher.group(2)), Long::sum);
+    }
+    return profile;
+  }
+
+  public static DispatchProfile read(Path path) throws IOException {
+    return parse(Files.readString(path));
+  }
+
+  public long getCount(int counter) {
+    return counts.getOrDefault(counter, 0L);
+  }
+
+  public boolean isEmpty() {
+    return counts.isEmpty();
+  }
+}
@@ -19,76 +19,83 @@
 
 package dev.askov.mjcompiler.vmt;
 
+import dev.askov.mjcompiler.methodsignature.ClassMethodSignature;
 import dev.askov.mjcompiler.symboltable.MJTab;
 import dev.askov.mjcompiler.util.MJUtils;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import rs.etf.pp1.mj.runtime.Code;
+import java.util.OptionalInt;
 import rs.etf.pp1.symboltable.concepts.Obj;
 
 /**
+ * The virtual methods of a single class, which the dispatch code of a call chooses from. Every
+ * overridable signature has a fixed slot; the slots of the superclass's table come first and in the
+ * same order (see {@link #inherit(DispatchTable)}).
+ *
+ * <p>The table only exists at compile time. At run time an object only carries the pre-order id of
+ * its class in field 0, which the dispatch code compares against the bounds of the ranges of a
+ * {@link DispatchPlan}.
+ *
  * @author Danijel Askov
  */
-public class VMT {
+public class DispatchTable {
 
-  private final Set<Obj> methods = new HashSet<>();
-  private int size;
+  private final List<Obj> methods = new ArrayList<>();
+  private final List<String> signatures = new ArrayList<>();
+  private final Map<String, Integer> slots = new HashMap<>();
 
-  public static final int NAME_ADDR_SEPARATOR = -1;
-  public static final int TABLE_TERMINATOR = -2;
+  public static String signatureOf(Obj method) {
+    return new ClassMethodSignature(method, MJTab.noType).getSignature();
+  }
 
+  /**
+   * Puts the method into the slot of its signature, appending a new slot if the signature is not
+   * in the table yet.
+   *
+   * @return {@code true} if a new slot has been added
+   */
   public boolean add(Obj method) {
     if (method == null || method.getKind() != Obj.Meth) {
       return false;
     }
-    if (methods.add(method)) {
-      MJUtils.getCompactClassMethodSignature(method).ifPresent(sig -> size += sig.length() + 2);
-      return true;
+    var signature = signatureOf(method);
+    var slot = slots.get(signature);
+    if (slot != null) {
+      methods.set(slot, method);
+      return false;
     }
-    return false;
+    slots.put(signature, methods.size());
+    methods.add(method);
+    signatures.add(signature);
+    return true;
   }
 
-  private final Obj sourceWord = new Obj(Obj.Con, "$currentChar", MJTab.charType);
-  private final Obj destinationWord =
-      new Obj(Obj.Var, "$currentWordInStaticMemoryZone", MJTab.intType, 0, 0);
-
-  private void putInStaticMemoryZone(int word) {
-    sourceWord.setAdr(word);
-    Code.load(sourceWord);
-    Code.store(destinationWord);
-    destinationWord.setAdr(destinationWord.getAdr() + 1);
+  /** Copies the slots of the superclass's table, which come first and in the same order. */
+  public void inherit(DispatchTable superclassTable) {
+    methods.addAll(superclassTable.methods);
+    signatures.addAll(superclassTable.signatures);
+    slots.putAll(superclassTable.slots);
   }
 
-  public void generateCreationCode() {
-    if (!methods.isEmpty()) {
-      for (var method : methods) {
-        MJUtils.getCompactClassMethodSignature(method)
-            .ifPresent(
-                methodSignature -> {
-                  var methodAddress = method.getAdr();
-                  for (var i = 0; i < methodSignature.length(); i++) {
-                    putInStaticMemoryZone(methodSignature.charAt(i));
-                  }
-                  putInStaticMemoryZone(NAME_ADDR_SEPARATOR);
-                  putInStaticMemoryZone(methodAddress);
-                });
-      }
-      putInStaticMemoryZone(TABLE_TERMINATOR);
-    }
+  public List<Obj> getMethods() {
+    return Collections.unmodifiableList(methods);
   }
 
-  public int getSize() {
-    return size != 0 ? size + 1 : 0;
-  }
-
-  public void setStartAddress(int startAddress) {
-    destinationWord.setAdr(startAddress);
+  public OptionalInt getSlot(Obj method) {
+    if (method == null || method.getKind() != Obj.Meth) {
+      return OptionalInt.empty();
+    }
+    var slot = slots.get(signatureOf(method));
+    return slot != null ? OptionalInt.of(slot) : OptionalInt.empty();
   }
 
   @Override
   public String toString() {
-    var stringBuilder = new StringBuilder("VMT {");
+    var stringBuilder = new StringBuilder("DispatchTable {");
     var i = 1;
     var iterator = methods.iterator();
 
@@ -126,20 +133,11 @@ public class VMT {
   }
 
   public boolean containsSameSignatureMethod(Obj overriddenMethod) {
-    for (var method : methods) {
-      if (MJUtils.haveSameSignatures(method, overriddenMethod)) {
-        return true;
-      }
-    }
-    return false;
+    return getSlot(overriddenMethod).isPresent();
   }
 
   public Optional<Obj> getSameSignatureMethod(Obj overriddenMethod) {
-    for (var method : methods) {
-      if (MJUtils.haveSameSignatures(method, overriddenMethod)) {
-        return Optional.of(method);
-      }
-    }
-    return Optional.empty();
+    var slot = getSlot(overriddenMethod);
+    return slot.isPresent() ? Optional.of(methods.get(slot.getAsInt())) : Optional.empty();
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.vmt;
+
+import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
+import dev.askov.mjcompiler.inheritancetree.visitor.InheritanceTreeVisitor;
+import dev.askov.mjcompiler.util.MJUtils;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * Fills the dispatch tables of all classes; has to be accepted by
+ * {@link InheritanceTree#ROOT_NODE}.
+ *
+ * <p>The first sweep keeps the nearest declaration of every signature on the path from the root
+ * to the current class and marks each method that is overridden by a method of the current
+ * class. The second sweep builds every table from its superclass's table: a method of the class
+ * takes over the slot of its signature, or gets a new slot if it is overridden further down.
+ * Both sweeps take time linear in the number of declared methods plus the size of the tables.
+ *
+ * @author Danijel Askov
+ */
+public class DispatchTableCreator implements InheritanceTreeVisitor {
+
+  private final Set<Obj> overriddenMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final Map<String, Obj> declarations = new HashMap<>();
+  private final Deque<List<SimpleEntry<String, Obj>>> shadowedDeclarations = new ArrayDeque<>();
+
+  private static List<Obj> declaredMethods(InheritanceTreeNode node) {
+    List<Obj> methods = new ArrayList<>();
+    if (!node.equals(InheritanceTree.ROOT_NODE)) {
+      for (var member : node.getClss().getType().getMembers()) {
+        if (member.getKind() == Obj.Meth) {
+          methods.add(member);
+        }
+      }
+    }
+    return methods;
+  }
+
+  @Override
+  public void visit(InheritanceTreeNode node) {
+    List<SimpleEntry<String, Obj>> shadowed = new ArrayList<>();
+    for (var method : declaredMethods(node)) {
+      var signature = DispatchTable.signatureOf(method);
+      var overriddenMethod = declarations.get(signature);
+      if (overriddenMethod != null
+          && MJUtils.returnTypesAssignmentCompatible(method, overriddenMethod)) {
+        overriddenMethods.add(overriddenMethod);
+      }
+      shadowed.add(new SimpleEntry<>(signature, declarations.put(signature, method)));
+    }
+    shadowedDeclarations.push(shadowed);
+  }
+
+  @Override
+  public void leave(InheritanceTreeNode node) {
+    var shadowed = shadowedDeclarations.pop();
+    for (var i = shadowed.size() - 1; i >= 0; i--) {
+      var declaration = shadowed.get(i);
+      if (declaration.getValue() != null) {
+        declarations.put(declaration.getKey(), declaration.getValue());
+      } else {
+        declarations.remove(declaration.getKey());
+      }
+    }
+    if (node.equals(InheritanceTree.ROOT_NODE)) {
+      node.accept(this::fillDispatchTable);
+    }
+  }
+
+  private void fillDispatchTable(InheritanceTreeNode node) {
+    var dispatchTable = node.getDispatchTable();
+    if (node.getParent() != null) {
+      dispatchTable.inherit(node.getParent().getDispatchTable());
+    }
+    for (var method : declaredMethods(node)) {
+      if (dispatchTable.containsSameSignatureMethod(method) || overriddenMethods.contains(method)) {
+        dispatchTable.add(method);
+      }
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler;
+
+import com.sun.management.ThreadMXBean;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
+import dev.askov.mjcompiler.symboltable.OpenAddressingDataStructure;
+import dev.askov.mjcompiler.vmt.DispatchPlanner;
+import dev.askov.mjcompiler.vmt.DispatchTableCreator;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+import rs.etf.pp1.symboltable.Tab;
+import rs.etf.pp1.symboltable.concepts.Obj;
+import rs.etf.pp1.symboltable.concepts.Struct;
+import rs.etf.pp1.symboltable.structure.HashTableDataStructure;
+
+/**
+ * Measures the compiler's data structures against the ones they replaced. Run it with {@code
+ * gradlew benchmark}. Every measurement is repeated a few times after a warm-up round, so that the
+ * numbers of the last rounds can be compared.
+ *
+ * @author Danijel Askov
+ */
+public class Benchmarks {
+
+  private static final int ROUNDS = 3;
+  private static final int HIERARCHY_COUNT = 10;
+
+  private static final ThreadMXBean THREAD_MX_BEAN =
+      (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private Benchmarks() {}
+
+  public static void main(String[] args) {
+    benchmarkScopes();
+    benchmarkHierarchies();
+  }
+
+  /**
+   * Builds a scope with 8 locals and looks up each of them 4 times, as a method body does. The
+   * names looked up are copies, as the lexer makes them.
+   */
+  private static void benchmarkScopes() {
+    var localCount = 8;
+    var lookupCount = 4;
+    var scopeCount = 1_000_000;
+    var names = new String[localCount];
+    var lookedUpNames = new String[localCount];
+    for (var i = 0; i < localCount; i++) {
+      names[i] = "local" + i;
+      lookedUpNames[i] = new String(names[i]);
+    }
+    // Each table gets its own copy of the code, so that neither slows down the calls of the other.
+    Supplier<Long> hashTable =
+        () -> {
+          var scope = new HashTableDataStructure();
+          for (var name : names) {
+            scope.insertKey(new Obj(Obj.Var, name, Tab.intType));
+          }
+          var found = 0L;
+          for (var i = 0; i < lookupCount; i++) {
+            for (var name : lookedUpNames) {
+              found += scope.searchKey(name) != null ? 1 : 0;
+            }
+          }
+          return found;
+        };
+    Supplier<Long> openAddressing =
+        () -> {
+          var scope = new OpenAddressingDataStructure();
+          for (var name : names) {
+            scope.insertKey(new Obj(Obj.Var, name, Tab.intType));
+          }
+          var found = 0L;
+          for (var i = 0; i < lookupCount; i++) {
+            for (var name : lookedUpNames) {
+              found += scope.searchKey(name) != null ? 1 : 0;
+            }
+          }
+          return found;
+        };
+    System.out.printf(
+        "Scopes of %d locals, %d lookups of each (per scope):%n", localCount, lookupCount);
+    for (var round = 0; round <= ROUNDS; round++) {
+      measure("HashTableDataStructure", hashTable, scopeCount, 1, round);
+      measure("OpenAddressingDataStructure", openAddressing, scopeCount, 1, round);
+    }
+  }
+
+  /**
+   * Builds hierarchies in which every class overrides the same method, then lays out their dispatch
+   * tables, numbers their classes and plans their dispatch. The time and memory per class should
+   * not grow with the size or the depth of the hierarchy.
+   */
+  private static void benchmarkHierarchies() {
+    System.out.println("Hierarchy passes (per class):");
+    for (var round = 0; round <= ROUNDS; round++) {
+      for (var size : List.of(1_000, 4_000, 10_000)) {
+        measure(size + " deep", () -> planHierarchy(size, true), HIERARCHY_COUNT, size, round);
+        measure(size + " wide", () -> planHierarchy(size, false), HIERARCHY_COUNT, size, round);
+      }
+    }
+  }
+
+  private static long planHierarchy(int size, boolean deep) {
+    CompilationHelper.resetCompilerState();
+    Obj root = null;
+    Obj superclass = null;
+    for (var i = 0; i < size; i++) {
+      var members = new OpenAddressingDataStructure();
+      members.insertKey(new Obj(Obj.Meth, "f", Tab.intType));
+      var clss = new Obj(Obj.Type, "C" + i, new Struct(Struct.Class, members));
+      if (superclass == null) {
+        InheritanceTree.addNodeForClass(clss);
+        root = clss;
+      } else {
+        clss.getType().setElementType(superclass.getType());
+        InheritanceTree.addNodeForClass(clss, superclass);
+      }
+      superclass = deep ? clss : root;
+    }
+    InheritanceTree.ROOT_NODE.accept(new DispatchTableCreator());
+    InheritanceTree.numberClassesInPreOrder();
+    var method = root.getType().getMembers().iterator().next();
+    var rootNode = InheritanceTree.getNode(root).orElseThrow();
+    return DispatchPlanner.plan(InheritanceTree.ROOT_NODE).getRanges(method, rootNode).size();
+  }
+
+  /**
+   * Runs the work the given number of times and prints the time and memory it took per unit of
+   * work (e.g. per scope built, or per class of a hierarchy).
+   */
+  private static void measure(
+      String name, Supplier<Long> work, int repetitions, int units, int round) {
+    var result = 0L;
+    var allocatedBefore = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+    var start = System.nanoTime();
+    for (var i = 0; i < repetitions; i++) {
+      result += work.get();
+    }
+    var time = System.nanoTime() - start;
+    var allocated = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    var count = (long) repetitions * units;
+    if (round > 0 && result >= 0) {
+      System.out.printf("  %-28s %8.1f ns %8d B%n", name, (double) time / count, allocated / count);
+    }
+  }
+}
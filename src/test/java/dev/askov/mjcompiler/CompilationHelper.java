@@ -22,10 +22,9 @@ package dev.askov.mjcompiler;
 import dev.askov.mjcompiler.ast.Program;
 import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
 import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
+import dev.askov.mjcompiler.loggers.Diagnostics;
+import dev.askov.mjcompiler.pass.PassManager;
 import dev.askov.mjcompiler.symboltable.MJTab;
-import dev.askov.mjcompiler.vmt.VMTCodeGenerator;
-import dev.askov.mjcompiler.vmt.VMTCreator;
-import dev.askov.mjcompiler.vmt.VMTStartAddressGenerator;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -35,6 +34,7 @@ import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import rs.etf.pp1.mj.runtime.Code;
 import rs.etf.pp1.mj.runtime.Run;
 
@@ -48,13 +48,19 @@ public class CompilationHelper {
     public final boolean syntaxError;
     public final boolean fatalSyntaxError;
     public final Program program;
+    public final Diagnostics diagnostics;
 
     ParseResult(
-        boolean lexicalError, boolean syntaxError, boolean fatalSyntaxError, Program program) {
+        boolean lexicalError,
+        boolean syntaxError,
+        boolean fatalSyntaxError,
+        Program program,
+        Diagnostics diagnostics) {
       this.lexicalError = lexicalError;
       this.syntaxError = syntaxError;
       this.fatalSyntaxError = fatalSyntaxError;
       this.program = program;
+      this.diagnostics = diagnostics;
     }
 
     public boolean hasErrors() {
@@ -65,10 +71,12 @@ public class CompilationHelper {
   public static class SemanticResult {
     public final ParseResult parseResult;
     public final boolean semanticError;
+    public final Diagnostics diagnostics;
 
-    SemanticResult(ParseResult parseResult, boolean semanticError) {
+    SemanticResult(ParseResult parseResult, boolean semanticError, Diagnostics diagnostics) {
       this.parseResult = parseResult;
       this.semanticError = semanticError;
+      this.diagnostics = diagnostics;
     }
   }
 
@@ -90,6 +98,11 @@ public class CompilationHelper {
       var classIdField = MJTab.class.getDeclaredField("classId");
       classIdField.setAccessible(true);
       classIdField.setInt(null, 0);
+
+      Code.pc = 0;
+      Code.mainPc = -1;
+      Code.dataSize = 0;
+      Code.greska = false;
     } catch (Exception e) {
       throw new RuntimeException("Failed to reset compiler state", e);
     }
@@ -109,7 +122,8 @@ public class CompilationHelper {
         parser.lexicalErrorDetected(),
         parser.syntaxErrorDetected(),
         parser.fatalSyntaxErrorDetected(),
-        program);
+        program,
+        parser.getDiagnostics());
   }
 
   public static SemanticResult analyze(String source) throws Exception {
@@ -117,17 +131,39 @@ public class CompilationHelper {
     var parseResult = parse(source);
 
     if (parseResult.hasErrors()) {
-      return new SemanticResult(parseResult, false);
+      return new SemanticResult(parseResult, false, new Diagnostics());
     }
 
     MJTab.init();
     var semanticAnalyzer = new SemanticAnalyzer();
-    parseResult.program.traverseBottomUp(semanticAnalyzer);
+    semanticAnalyzer.analyze(parseResult.program);
 
-    return new SemanticResult(parseResult, semanticAnalyzer.semanticErrorDetected());
+    return new SemanticResult(
+        parseResult, semanticAnalyzer.semanticErrorDetected(), semanticAnalyzer.getDiagnostics());
   }
 
   public static File compileToFile(String source) throws Exception {
+    return compileToFile(source, codeGenerator -> {});
+  }
+
+  public static File compileToFile(String source, Consumer<CodeGenerator> configuration)
+      throws Exception {
+    return compileToFile(source, PassManager.create(), configuration);
+  }
+
+  public static PassManager createPassManager(int optimizationLevel) {
+    var passManager = PassManager.create();
+    passManager.setOptimizationLevel(optimizationLevel);
+    return passManager;
+  }
+
+  public static File compileToFile(String source, PassManager passManager) throws Exception {
+    return compileToFile(source, passManager, codeGenerator -> {});
+  }
+
+  public static File compileToFile(
+      String source, PassManager passManager, Consumer<CodeGenerator> configuration)
+      throws Exception {
     resetCompilerState();
     var parseResult = parse(source);
 
@@ -137,52 +173,15 @@ public class CompilationHelper {
 
     MJTab.init();
     var semanticAnalyzer = new SemanticAnalyzer();
-    parseResult.program.traverseBottomUp(semanticAnalyzer);
+    semanticAnalyzer.analyze(parseResult.program);
 
     if (semanticAnalyzer.semanticErrorDetected()) {
       throw new RuntimeException("Source contains semantic errors");
     }
 
-    var vmtCreator = new VMTCreator();
-    InheritanceTree.ROOT_NODE.accept(vmtCreator);
-
-    var vmtStartAddressGenerator =
-        new VMTStartAddressGenerator(semanticAnalyzer.getStaticVarsCount());
-    InheritanceTree.ROOT_NODE.accept(vmtStartAddressGenerator);
-
-    Code.dataSize =
-        semanticAnalyzer.getStaticVarsCount() + vmtStartAddressGenerator.getTotalVMTSize();
-
-    var codeGenerator = new CodeGenerator();
-
-    if (semanticAnalyzer.printBoolMethodIsUsed()) CodeGenerator.generatePrintBoolMethod();
-    if (semanticAnalyzer.readBoolMethodIsUsed()) CodeGenerator.generateReadBoolMethod();
-    if (semanticAnalyzer.vecTimesVecMethodIsUsed()) CodeGenerator.generateVecTimesVecMethod();
-    if (semanticAnalyzer.vecPlusVecMethodIsUsed()) CodeGenerator.generateVecPlusVecMethod();
-    if (semanticAnalyzer.vecTimesScalarMethodIsUsed()) CodeGenerator.generateVecTimesScalarMethod();
-    if (semanticAnalyzer.scalarTimesVectorMethodIsUsed())
-      CodeGenerator.generateScalarTimesVectorMethod();
-
-    parseResult.program.traverseBottomUp(codeGenerator);
-
-    Code.mainPc = Code.pc;
-    Code.put(Code.enter);
-    Code.put(0);
-    Code.put(0);
+    new Compilation(parseResult.program, semanticAnalyzer).generateCode(passManager, configuration);
 
-    var vmtCodeGenerator = new VMTCodeGenerator();
-    InheritanceTree.ROOT_NODE.accept(vmtCodeGenerator);
-
-    Code.put(Code.call);
-    Code.put2(codeGenerator.getMainPc() - Code.pc + 1);
-    Code.put(Code.exit);
-    Code.put(Code.return_);
-
-    var objFile = File.createTempFile("mjtest_", ".obj");
-    objFile.deleteOnExit();
-    Code.write(new FileOutputStream(objFile));
-
-    return objFile;
+    return writeCode();
   }
 
   public static String compileAndRun(String source, String input) throws Exception {
@@ -194,6 +193,27 @@ public class CompilationHelper {
     return compileAndRun(source, "");
   }
 
+  /**
+   * Runs the code from address 0 up to {@code Code.pc} on the VM, starting at address 0 and without
+   * static data.
+   */
+  public static String runCode(String input) throws Exception {
+    Code.mainPc = 0;
+    Code.dataSize = 0;
+    return runVM(writeCode(), input);
+  }
+
+  /** Writes the code to a temporary object file, leaving the code as it is. */
+  private static File writeCode() throws Exception {
+    var objFile = File.createTempFile("mjtest_", ".obj");
+    objFile.deleteOnExit();
+    var pc = Code.pc;
+    Code.write(new FileOutputStream(objFile));
+    // Code.write appends the header of the file to the code.
+    Code.pc = pc;
+    return objFile;
+  }
+
   public static String runVM(File objFile, String input) {
     var originalIn = System.in;
     var originalOut = System.out;
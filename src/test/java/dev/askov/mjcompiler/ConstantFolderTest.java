@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class ConstantFolderTest {
+
+  @Test
+  public void constantsAreFoldedAndDeadBranchesRemoved() throws Exception {
+    var source =
+        """
+        program Folding
+          const int N = 6, MAX = 2147483647;
+          const bool DEBUG = false;
+          const char C = 'x';
+        {
+          void trace(int x) {
+            print(x);
+          }
+
+          void main()
+          int x;
+          {
+            x = (N + 2) * 3 - N / 4;
+            print(x); print(' ');
+            print(-N % 4); print(' ');
+            print(MAX + 1); print(' ');
+            if (DEBUG && x > 0) trace(x);
+            if (N > 5 || x == 0) print('a'); else print('b');
+            if (C != 'x') print('c'); else print('d');
+            do {
+              x--;
+            } while (false);
+            print(x); print(' ');
+            do {
+              x++;
+              if (x > 30) break;
+              if (DEBUG) break;
+            } while (true);
+            print(x);
+          }
+        }
+        """;
+    var expected = "23 -2 -2147483648 ad22 31";
+
+    var passManager = CompilationHelper.createPassManager(0);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    var unfoldedCodeSize = Code.pc;
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+
+    passManager = CompilationHelper.createPassManager(1);
+    objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+    assertTrue(Code.pc < unfoldedCodeSize);
+
+    var constantFolding = passManager.getStatistics("constant-folding");
+    assertEquals(7, constantFolding.getCount("operations folded"));
+    assertEquals(6, constantFolding.getCount("constant conditions"));
+    assertTrue(constantFolding.getCount("dead code bytes removed") > 0);
+    assertEquals(1, passManager.getStatistics("tree-shaking").getCount("methods removed"));
+  }
+}
@@ -23,10 +23,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import dev.askov.mjcompiler.vmt.DispatchProfile;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
 
 /**
  * @author Danijel Askov
@@ -537,6 +539,187 @@ public class EndToEndTest {
     assertEquals("25\n21\n", output);
   }
 
+  @Test
+  public void dispatchThroughInnerClasses() throws Exception {
+    var output =
+        CompilationHelper.compileAndRun(
+            """
+            program Dispatch
+              class A {
+                {
+                  int f() { return 1; }
+                }
+              }
+              class B extends A {
+                {
+                  int f() { return 2; }
+                }
+              }
+              class C extends B {
+                {
+                  int g() { return 0; }
+                }
+              }
+              class D extends A {
+                {
+                  int g() { return 0; }
+                }
+              }
+            {
+              void main()
+              A a;
+              B b;
+              {
+                a = new A;
+                print(a.f());
+                a = new B;
+                print(a.f());
+                a = new C;
+                print(a.f());
+                a = new D;
+                print(a.f());
+                b = new C;
+                print(b.f());
+                print(eol);
+              }
+            }
+            """);
+    assertEquals("12212\n", output);
+  }
+
+  @Test
+  public void profileGuidedDispatch() throws Exception {
+    var source =
+        """
+        program SkewedDispatch
+          class A {
+            {
+              int f() { return 1; }
+            }
+          }
+          class B extends A {
+            {
+              int f() { return 2; }
+            }
+          }
+          class C extends A {
+            {
+              int f() { return 3; }
+            }
+          }
+          class D extends A {
+            {
+              int f() { return 4; }
+            }
+          }
+        {
+          void main()
+          A a;
+          int i, s;
+          {
+            a = new B;
+            s = a.f();
+            a = new D;
+            i = 0;
+            do {
+              s = s + a.f();
+              i++;
+            } while (i < 10);
+            print(s);
+          }
+        }
+        """;
+
+    var instrumented =
+        CompilationHelper.runVM(
+            CompilationHelper.compileToFile(
+                source, CompilationHelper.createPassManager(1), CodeGenerator::instrumentDispatch),
+            "");
+    assertTrue(instrumented.startsWith("42"));
+
+    // Only B and D are instantiated, so both call sites have one counter for each of them.
+    var profile = DispatchProfile.parse(instrumented);
+    assertEquals(1, profile.getCount(0));
+    assertEquals(10, profile.getCount(2 + 1));
+    assertEquals(0, profile.getCount(2));
+
+    var optimized =
+        CompilationHelper.runVM(
+            CompilationHelper.compileToFile(
+                source,
+                CompilationHelper.createPassManager(1),
+                codeGenerator -> codeGenerator.useDispatchProfile(profile)),
+            "");
+    assertEquals("42", optimized);
+  }
+
+  @Test
+  public void unreachableMethodsAndClassesAreRemoved() throws Exception {
+    var source =
+        """
+        program TreeShaking
+          class A {
+            {
+              int f() { return 1; }
+            }
+          }
+          class B extends A {
+            {
+              int f() { return 2; }
+            }
+          }
+          class C extends A {
+            {
+              int f() { print(true); return 3; }
+            }
+          }
+        {
+          void unused() {
+            print(false);
+          }
+
+          void main()
+          A a;
+          {
+            a = new B;
+            print(a.f());
+          }
+        }
+        """;
+    var shaken =
+        """
+        program TreeShaking
+          class A {
+            {
+              int f() { return 1; }
+            }
+          }
+          class B extends A {
+            {
+              int f() { return 2; }
+            }
+          }
+        {
+          void main()
+          A a;
+          {
+            a = new B;
+            print(a.f());
+          }
+        }
+        """;
+
+    var objFile = CompilationHelper.compileToFile(source, CompilationHelper.createPassManager(1));
+    assertEquals("2", CompilationHelper.runVM(objFile, ""));
+    var codeSize = Code.pc;
+    var dataSize = Code.dataSize;
+
+    objFile = CompilationHelper.compileToFile(shaken, CompilationHelper.createPassManager(1));
+    assertEquals("2", CompilationHelper.runVM(objFile, ""));
+    assertEquals(codeSize, Code.pc);
+    assertEquals(dataSize, Code.dataSize);
+  }
+
   @Test
   public void printWithWidth() throws Exception {
     var output =
@@ -652,6 +835,20 @@ public class EndToEndTest {
     Compiler.main(new String[] {"nonexistent.mj", "output.obj"});
   }
 
+  @Test
+  public void compilerAcceptsOptimizationOptions() throws Exception {
+    var objFile = File.createTempFile("mjtest_", ".obj");
+    objFile.deleteOnExit();
+    Compiler.main(
+        new String[] {
+          RESOURCES_PREFIX + "simple_calculator.mj", objFile.getPath(), "-O0", "-fdevirtualize"
+        });
+
+    var input = Files.readString(Path.of(RESOURCES_PREFIX + "input_stream.txt"));
+    var output = CompilationHelper.runVM(objFile, input);
+    assertTrue("Expected output to contain '10 + 2 = 12'", output.contains("10 + 2 = 12"));
+  }
+
   @Test
   public void compilerOutputsBytecodeFile() throws Exception {
     var source = Files.readString(Path.of(RESOURCES_PREFIX + "simple_calculator.mj"));
@@ -689,4 +886,55 @@ public class EndToEndTest {
         result1.semanticError,
         result2.semanticError);
   }
+
+  @Test
+  public void unrolledVectorLoopsHandleEveryRemainder() throws Exception {
+    var source =
+        """
+        program Unrolling
+          int a[], b[], s[];
+        {
+          void main()
+          int n, i;
+          {
+            n = 0;
+            do {
+              a = new int[n]; b = new int[n];
+              i = 0;
+              if (n > 0) {
+                do {
+                  a[i] = i + 1; b[i] = n - i;
+                  i++;
+                } while (i < n);
+              }
+              s = a + b;
+              print(a * b); print(' ');
+              print(a * s); print(' ');
+              s = a * 2 + b;
+              if (n > 0) print(s[n - 1]);
+              print(' ');
+              n++;
+            } while (n < 11);
+          }
+        }
+        """;
+
+    var passManager = CompilationHelper.createPassManager(1);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    var expected = CompilationHelper.runVM(objFile, "");
+    assertEquals(0, passManager.getStatistics("unroll-vector-loops").getCount("loops unrolled"));
+
+    for (var unrollFactor : new int[] {4, 8}) {
+      passManager = CompilationHelper.createPassManager(1);
+      objFile =
+          CompilationHelper.compileToFile(
+              source, passManager, codeGenerator -> codeGenerator.unrollVectorLoops(unrollFactor));
+      assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+    }
+
+    passManager = CompilationHelper.createPassManager(2);
+    objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+    assertEquals(3, passManager.getStatistics("unroll-vector-loops").getCount("loops unrolled"));
+  }
 }
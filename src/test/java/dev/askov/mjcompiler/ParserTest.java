@@ -19,9 +19,11 @@
 
 package dev.askov.mjcompiler;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import dev.askov.mjcompiler.loggers.MJLogger;
 import org.junit.Test;
 
 /**
@@ -200,4 +202,25 @@ public class ParserTest {
             """);
     assertFalse("Expected no parse errors", result.hasErrors());
   }
+
+  @Test
+  public void lexicalErrorIsRecordedAsDiagnostic() throws Exception {
+    var result =
+        CompilationHelper.parse(
+            """
+            program Test
+              int x = #;
+            {
+              void main()
+              {
+              }
+            }
+            """);
+    var diagnostic = result.diagnostics.getDiagnostics().get(0);
+    assertEquals(MJLogger.Type.ERROR_LOGGER, diagnostic.getType());
+    assertEquals("#", diagnostic.getSymbol());
+    assertEquals(Integer.valueOf(2), diagnostic.getLine());
+    assertEquals(Integer.valueOf(11), diagnostic.getColumn());
+    assertTrue(diagnostic.render().contains("token \"#\" not recognized"));
+  }
 }
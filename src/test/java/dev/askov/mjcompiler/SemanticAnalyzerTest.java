@@ -19,9 +19,11 @@
 
 package dev.askov.mjcompiler;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import dev.askov.mjcompiler.loggers.SemanticErrorLogger.SemanticErrorKind;
 import org.junit.Test;
 
 /**
@@ -733,4 +735,210 @@ public class SemanticAnalyzerTest {
         }
         """);
   }
+
+  @Test
+  public void globalAndBuiltInMethodCalls() throws Exception {
+    assertNoSemanticError(
+        """
+        program Test
+          class Foo {
+            {
+              int size(int arr[])
+              {
+                return len(arr) + ord(chr(1));
+              }
+            }
+          }
+        {
+          int twice(int x)
+          {
+            return x * 2;
+          }
+
+          int quadruple(int x)
+          {
+            return twice(twice(x));
+          }
+
+          void main()
+          Foo foo;
+          {
+            foo = new Foo;
+            print(foo.size(new int[3]));
+            print(quadruple(5));
+          }
+        }
+        """);
+  }
+
+  @Test
+  public void programNameDoesNotLeakIntoNextCompilation() throws Exception {
+    var source =
+        """
+        program Shared
+        {
+          void main()
+          {
+          }
+        }
+        """;
+    assertNoSemanticError(source);
+    assertNoSemanticError(source);
+  }
+
+  @Test
+  public void semanticErrorIsRecordedAsDiagnostic() throws Exception {
+    var result =
+        CompilationHelper.analyze(
+            """
+            program Test
+            {
+              void main()
+              int x;
+              {
+                x = 'a';
+              }
+            }
+            """);
+    assertTrue(result.semanticError);
+    assertEquals(1, result.diagnostics.size());
+    var diagnostic = result.diagnostics.getDiagnostics().get(0);
+    assertEquals(SemanticErrorKind.TYPE_MISMATCH, diagnostic.getKind());
+    assertEquals(Integer.valueOf(6), diagnostic.getLine());
+    assertTrue(
+        diagnostic.render().contains("Type mismatch: cannot convert from \"char\" to \"int\""));
+  }
+
+  @Test
+  public void globalMethodCallsLaterGlobalMethod() throws Exception {
+    assertSemanticError(
+        """
+        program Test
+        {
+          void main()
+          {
+            f();
+          }
+          void f()
+          {
+          }
+        }
+        """);
+  }
+
+  @Test
+  public void classMethodCallsLaterMethodOfItsClass() throws Exception {
+    assertSemanticError(
+        """
+        program Test
+          class A
+          {
+            {
+              void f()
+              {
+                g();
+              }
+              void g()
+              {
+              }
+            }
+          }
+        {
+          void main()
+          {
+          }
+        }
+        """);
+  }
+
+  @Test
+  public void classMethodUsesLaterGlobalVariable() throws Exception {
+    assertSemanticError(
+        """
+        program Test
+          class A
+          {
+            {
+              void f()
+              {
+                x = 1;
+              }
+            }
+          }
+          int x;
+        {
+          void main()
+          {
+          }
+        }
+        """);
+  }
+
+  @Test
+  public void classMethodUsesLaterClass() throws Exception {
+    assertSemanticError(
+        """
+        program Test
+          class A
+          {
+            {
+              void f()
+              {
+                print(len(new B[1]));
+              }
+            }
+          }
+          class B
+          {
+          }
+        {
+          void main()
+          {
+          }
+        }
+        """);
+  }
+
+  @Test
+  public void methodBodiesSeeTheMethodsDeclaredBeforeThem() throws Exception {
+    assertNoSemanticError(
+        """
+        program Test
+          class A
+          {
+            int y;
+            {
+              int f() { return y; }
+              int g() { return f() + this.f(); }
+            }
+          }
+        {
+          int h(A a) { return a.g(); }
+          void main()
+          A a;
+          {
+            a = new A;
+            print(h(a));
+          }
+        }
+        """);
+  }
+
+  @Test
+  public void diagnosticsOfAllMethodBodiesAreOrderedByLine() throws Exception {
+    var methodCount = 50;
+    var source = new StringBuilder("program Test\n{\n");
+    for (var i = 0; i < methodCount; i++) {
+      source.append("  void m").append(i).append("()\n  int x;\n  {\n    x = 'a';\n  }\n");
+    }
+    source.append("  void main()\n  {\n  }\n}\n");
+    var result = CompilationHelper.analyze(source.toString());
+    assertTrue(result.semanticError);
+    var diagnostics = result.diagnostics.getDiagnostics();
+    assertEquals(methodCount, diagnostics.size());
+    for (var i = 0; i < methodCount; i++) {
+      assertEquals(SemanticErrorKind.TYPE_MISMATCH, diagnostics.get(i).getKind());
+      assertEquals(Integer.valueOf(6 + 5 * i), diagnostics.get(i).getLine());
+    }
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Danijel Askov
+ */
+public class VectorFusionTest {
+
+  @Test
+  public void vectorExpressionsAreFusedIntoOneLoop() throws Exception {
+    var source =
+        """
+        program Fusion
+          const int K = 2;
+          int a[], b[], c[];
+        {
+          void main()
+          int i;
+          {
+            a = new int[3]; b = new int[3]; c = new int[3];
+            i = 0;
+            do {
+              a[i] = i; b[i] = i + 1; c[i] = 10 * i;
+              i++;
+            } while (i < 3);
+            a = a + b * K + c;
+            print(a[0]); print(a[1]); print(a[2]); print(' ');
+            b = c + a * (i - 1) + b;
+            print(b[2]); print(' ');
+            print((a + b) * (c * K)); print(' ');
+            print(a * b);
+          }
+        }
+        """;
+    var expected = "21528 79 5420 2852";
+
+    var passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("vector-fusion", false);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+
+    passManager = CompilationHelper.createPassManager(1);
+    objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+
+    var vectorFusion = passManager.getStatistics("vector-fusion");
+    assertEquals(3, vectorFusion.getCount("expressions fused"));
+    assertEquals(9, vectorFusion.getCount("operations fused"));
+    assertEquals(6, vectorFusion.getCount("intermediate arrays avoided"));
+    assertEquals(2, vectorFusion.getCount("loops generated"));
+  }
+}
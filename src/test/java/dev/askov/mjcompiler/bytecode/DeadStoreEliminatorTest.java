@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class DeadStoreEliminatorTest {
+
+  /**
+   * Appends a method that sums up local 0 down to zero into local 1 in a loop. Local 1 is also
+   * stored to after the loop and local 2 is incremented, neither of which is loaded afterwards.
+   */
+  private static void putLoop() {
+    Code.pc = 0;
+    Code.put(Code.enter);
+    Code.put(1);
+    Code.put(3);
+    Code.put(Code.const_5);
+    Code.put(Code.store_n + 1);
+    var loopStart = Code.pc;
+    Code.put(Code.load_n + 1);
+    Code.put(Code.load_n);
+    Code.put(Code.add);
+    Code.put(Code.store_n + 1);
+    Code.put(Code.inc);
+    Code.put(0);
+    Code.put(-1);
+    Code.put(Code.load_n);
+    Code.put(Code.const_n);
+    Code.putFalseJump(Code.le, loopStart);
+    Code.put(Code.const_1);
+    Code.put(Code.store_n + 1); // dead: the method returns
+    Code.put(Code.inc);
+    Code.put(2);
+    Code.put(1); // dead as well
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+  }
+
+  @Test
+  public void loopIsSplitIntoBlocks() {
+    putLoop();
+    var controlFlowGraph = ControlFlowGraph.build(CodeModel.decode().orElseThrow());
+    var blocks = controlFlowGraph.getBlocks();
+
+    assertEquals(3, blocks.size());
+    var loop = blocks.get(1);
+    assertEquals(List.of(loop, blocks.get(2)), loop.getSuccessors());
+    assertEquals(List.of(blocks.get(0), loop), loop.getPredecessors());
+    assertSame(loop, controlFlowGraph.getBlock(loop.getFirst()));
+    assertTrue(blocks.get(2).getSuccessors().isEmpty());
+
+    var livenessAnalysis = LivenessAnalysis.analyze(controlFlowGraph);
+    assertTrue(livenessAnalysis.getLiveIn(loop).get(0));
+    assertTrue(livenessAnalysis.getLiveIn(loop).get(1));
+    assertFalse(livenessAnalysis.getLiveIn(blocks.get(0)).get(1));
+    assertTrue(livenessAnalysis.getLiveOut(blocks.get(0)).get(1));
+    assertTrue(livenessAnalysis.getLiveOut(blocks.get(2)).isEmpty());
+  }
+
+  @Test
+  public void storesThatAreNeverLoadedAreRemoved() {
+    putLoop();
+    var codeModel = CodeModel.decode().orElseThrow();
+
+    assertEquals(2, DeadStoreEliminator.eliminate(codeModel));
+    PeepholeOptimizer.optimize(codeModel);
+    codeModel.encode();
+
+    assertArrayEquals(
+        new byte[] {
+          Code.enter, 1, 3, Code.const_5, Code.store_n + 1, Code.load_n + 1, Code.load_n,
+          Code.add, Code.store_n + 1, Code.inc, 0, -1, Code.load_n, Code.const_n,
+          (byte) (Code.jcc + Code.gt), -1, -9, Code.exit, Code.return_
+        },
+        Arrays.copyOf(Code.buf, Code.pc));
+  }
+
+  @Test
+  public void storesLoadedInSuccessorsOrAfterTheBackEdgeAreKept() throws Exception {
+    Code.pc = 0;
+    // x = 5; i = 0; previous = 0; do { print(previous); previous = i; i++; } while (i < 3);
+    // print(x);
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(3);
+    Code.put(Code.const_5);
+    Code.put(Code.store_n);
+    Code.put(Code.const_n);
+    Code.put(Code.store_n + 1);
+    Code.put(Code.const_n);
+    Code.put(Code.store_n + 2);
+    var loopStart = Code.pc;
+    Code.put(Code.load_n + 2);
+    Code.put(Code.const_n);
+    Code.put(Code.print);
+    Code.put(Code.load_n + 1);
+    Code.put(Code.store_n + 2); // only loaded in the next iteration
+    Code.put(Code.inc);
+    Code.put(1);
+    Code.put(1);
+    Code.put(Code.load_n + 1);
+    Code.put(Code.const_3);
+    Code.putFalseJump(Code.ge, loopStart);
+    Code.put(Code.load_n);
+    Code.put(Code.const_n);
+    Code.put(Code.print);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    var original = Arrays.copyOf(Code.buf, Code.pc);
+    assertEquals("0015", CompilationHelper.runCode(""));
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    assertEquals(0, DeadStoreEliminator.eliminate(codeModel));
+    codeModel.encode();
+
+    assertArrayEquals(original, Arrays.copyOf(Code.buf, Code.pc));
+    assertEquals("0015", CompilationHelper.runCode(""));
+  }
+}
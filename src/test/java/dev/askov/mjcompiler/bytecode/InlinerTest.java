@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import java.util.Arrays;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class InlinerTest {
+
+  @Test
+  public void callsAreReplacedByTheCodeOfTheCalledMethod() {
+    Code.pc = 0;
+    // A method that increments its local before it stores to it, so it always returns 1.
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(1);
+    Code.put(Code.inc);
+    Code.put(0);
+    Code.put(1);
+    Code.put(Code.load_n);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    var mainPc = Code.pc;
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(1);
+    for (var i = 0; i < 2; i++) {
+      Code.put(Code.call);
+      Code.put2(-Code.pc + 1);
+    }
+    Code.put(Code.add);
+    Code.put(Code.store_n);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    var inliner = Inliner.inline(codeModel, mainPc);
+    codeModel.encode();
+
+    assertEquals(2, inliner.getInlinedCallCount());
+    assertEquals(1, inliner.getRemovedMethodCount());
+    assertArrayEquals(
+        new byte[] {
+          Code.enter, 0, 2, Code.const_n, Code.store_n + 1, Code.inc, 1, 1, Code.load_n + 1,
+          Code.const_n, Code.store_n + 1, Code.inc, 1, 1, Code.load_n + 1, Code.add, Code.store_n,
+          Code.exit, Code.return_
+        },
+        Arrays.copyOf(Code.buf, Code.pc));
+  }
+
+  @Test
+  public void smallMethodsAreInlined() throws Exception {
+    var source =
+        """
+        program Inlining
+          class Counter {
+            int count;
+            {
+              void add(int delta) { count = count + delta; }
+            }
+          }
+        {
+          int square(int x) { return x * x; }
+          int twice(int x) { x = x + x; return x; }
+          int fib(int n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }
+
+          void main()
+          int i, s; Counter c;
+          {
+            c = new Counter;
+            i = 0; s = 0;
+            do {
+              s = s + square(i) + twice(i);
+              c.add(i);
+              i++;
+            } while (i < 10);
+            print(s); print(' '); print(c.count); print(' '); print(fib(10));
+          }
+        }
+        """;
+    var expected = "375 45 55";
+
+    var passManager = CompilationHelper.createPassManager(2);
+    passManager.toggle("inline", false);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+    var codeSize = Code.pc;
+
+    passManager = CompilationHelper.createPassManager(2);
+    objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+    assertTrue(Code.pc < codeSize);
+
+    var inline = passManager.getStatistics("inline");
+    assertEquals(3, inline.getCount("call sites inlined"));
+    assertEquals(3, inline.getCount("methods removed"));
+  }
+
+  @Test
+  public void calleesWithBranchesAndSeveralReturnsAreInlined() throws Exception {
+    var source =
+        """
+        program InliningBranches
+        {
+          int clamp(int x, int lo, int hi) {
+            if (x < lo) return lo;
+            if (x > hi) return hi;
+            return x;
+          }
+          int sign(int x) { if (x < 0) return -1; if (x == 0) return 0; return 1; }
+          int digits(int n, int d) { do { d++; n = n / 10; } while (n > 0); return d; }
+
+          void main()
+          int i;
+          {
+            i = -3;
+            do {
+              print(100 + clamp(i, -1, 2) * 10);
+              if (sign(i) < 0) print('n'); else if (sign(i) == 0) print('z'); else print('p');
+              print(' ');
+              i++;
+            } while (i <= 3);
+            print(digits(0, 0)); print(digits(7, 0)); print(digits(12345, 0));
+          }
+        }
+        """;
+    var expected = "90n 90n 90n 100z 110p 120p 120p 115";
+
+    var passManager = CompilationHelper.createPassManager(2);
+    passManager.toggle("inline", false);
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+
+    passManager = CompilationHelper.createPassManager(2);
+    // Every return of a callee jumps past the call, leaving the value above what the caller had
+    // already pushed (100 and the operands of the conditions).
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+    var inline = passManager.getStatistics("inline");
+    assertEquals(6, inline.getCount("call sites inlined"));
+    assertEquals(3, inline.getCount("methods removed"));
+  }
+}
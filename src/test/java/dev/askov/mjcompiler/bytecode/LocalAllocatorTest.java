@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import java.util.Arrays;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class LocalAllocatorTest {
+
+  @Test
+  public void localsThatAreNeverLiveTogetherShareSlot() {
+    Code.pc = 0;
+    // The parameter is live until the end, local 4 until local 5 is stored to.
+    Code.put(Code.enter);
+    Code.put(1);
+    Code.put(6);
+    Code.put(Code.const_1);
+    Code.put(Code.store);
+    Code.put(4);
+    Code.put(Code.load);
+    Code.put(4);
+    Code.put(Code.store);
+    Code.put(5);
+    Code.put(Code.load);
+    Code.put(5);
+    Code.put(Code.load_n);
+    Code.put(Code.add);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    var localAllocator = LocalAllocator.allocate(codeModel);
+    codeModel.encode();
+
+    assertEquals(4, localAllocator.getSavedSlotCount());
+    assertEquals(2, localAllocator.getMovedLocalCount());
+    assertArrayEquals(
+        new byte[] {
+          Code.enter, 1, 2, Code.const_1, Code.store_n + 1, Code.load_n + 1, Code.store_n + 1,
+          Code.load_n + 1, Code.load_n, Code.add, Code.exit, Code.return_
+        },
+        Arrays.copyOf(Code.buf, Code.pc));
+  }
+
+  @Test
+  public void localsShareSlotsAndHotOnesGetShortForms() throws Exception {
+    var source =
+        """
+        program LocalAllocation
+        {
+          void main()
+          int a, b, c, d, e, i, s;
+          {
+            read(a); b = a * 2; print(b); print(' ');
+            read(c); d = c + b; print(d); print(' ');
+            s = 0; i = 0;
+            do { read(e); s = s + e * i; i++; } while (i < 3);
+            print(s);
+          }
+        }
+        """;
+    var input = "4 5 1 2 3";
+    var expected = "8 13 8";
+
+    var passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("allocate-locals", false);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, input));
+    var codeSize = Code.pc;
+
+    passManager = CompilationHelper.createPassManager(1);
+    objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, input));
+    assertTrue(Code.pc < codeSize);
+
+    var allocateLocals = passManager.getStatistics("allocate-locals");
+    assertEquals(4, allocateLocals.getCount("frame slots saved"));
+    assertEquals(6, allocateLocals.getCount("locals moved"));
+  }
+
+  @Test
+  public void localsLiveAcrossTheBackEdgeKeepTheirValue() throws Exception {
+    Code.pc = 0;
+    // i = 0; do { print(carry); t = i; carry = t * t; i++; } while (i < 3);
+    // carry is live on entry and from its store to the next iteration; t only shares its slot.
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(3);
+    Code.put(Code.const_n);
+    Code.put(Code.store_n);
+    var loopStart = Code.pc;
+    Code.put(Code.load_n + 1);
+    Code.put(Code.const_n);
+    Code.put(Code.print);
+    Code.put(Code.load_n);
+    Code.put(Code.store_n + 2);
+    Code.put(Code.load_n + 2);
+    Code.put(Code.load_n + 2);
+    Code.put(Code.mul);
+    Code.put(Code.store_n + 1);
+    Code.put(Code.inc);
+    Code.put(0);
+    Code.put(1);
+    Code.put(Code.load_n);
+    Code.put(Code.const_3);
+    Code.putFalseJump(Code.ge, loopStart);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    assertEquals("001", CompilationHelper.runCode(""));
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    var localAllocator = LocalAllocator.allocate(codeModel);
+    codeModel.encode();
+
+    assertEquals(1, localAllocator.getSavedSlotCount());
+    assertEquals(2, Code.buf[2]);
+    assertEquals("001", CompilationHelper.runCode(""));
+  }
+
+  @Test
+  public void localsLiveOnEntryOrAcrossLoopsDoNotShareSlots() throws Exception {
+    var source =
+        """
+        program LocalAllocationEdges
+        {
+          void main()
+          int x, y, i, t, u;
+          {
+            y = 9; print(y); print(' ');
+            i = 0;
+            do { print(x); t = i * 10; x = t + 1; i++; } while (i < 3);
+            print(' ');
+            u = 4; print(u + x);
+          }
+        }
+        """;
+    var expected = "9 0111 25";
+
+    var passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("allocate-locals", false);
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+
+    passManager = CompilationHelper.createPassManager(1);
+    // x is read before it is stored to and is carried from one iteration to the next, so y, t and
+    // u may only share a slot with each other.
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+    assertEquals(3, passManager.getStatistics("allocate-locals").getCount("frame slots saved"));
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import java.util.Arrays;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class PeepholeOptimizerTest {
+
+  private static byte[] code() {
+    return Arrays.copyOf(Code.buf, Code.pc);
+  }
+
+  private static byte[] optimize() {
+    var codeModel = CodeModel.decode().orElseThrow();
+    PeepholeOptimizer.optimize(codeModel);
+    codeModel.encode();
+    return code();
+  }
+
+  @Test
+  public void decodedCodeIsEncodedUnchanged() {
+    Code.pc = 0;
+    Code.put(Code.enter);
+    Code.put(1);
+    Code.put(1);
+    Code.put(Code.const_);
+    Code.put4(-100000);
+    Code.put(Code.load_n);
+    Code.putFalseJump(Code.lt, 0);
+    var jump = Code.pc - 2;
+    Code.put(Code.inc);
+    Code.put(0);
+    Code.put(-1);
+    Code.fixup(jump);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    var expected = code();
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    assertEquals(7, codeModel.getInstructions().size());
+    codeModel.encode();
+
+    assertArrayEquals(expected, code());
+  }
+
+  @Test
+  public void jumpsAreThreadedAndUnreachableCodeIsRemoved() {
+    Code.pc = 0;
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(0);
+    Code.putJump(10); // to the second jump
+    Code.put(Code.const_1); // unreachable
+    Code.put(Code.pop);
+    Code.put(Code.trap);
+    Code.put(1);
+    Code.putJump(13); // to the exit
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    var peepholeOptimizer = PeepholeOptimizer.optimize(codeModel);
+    codeModel.encode();
+
+    assertArrayEquals(new byte[] {Code.enter, 0, 0, Code.exit, Code.return_}, code());
+    assertEquals(1, peepholeOptimizer.getThreadedJumpCount());
+    assertEquals(5, peepholeOptimizer.getUnreachableInstructionCount());
+  }
+
+  @Test
+  public void conditionalJumpOverJumpIsInverted() {
+    Code.pc = 0;
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(2);
+    Code.put(Code.load_n);
+    Code.put(Code.load_n + 1);
+    Code.putFalseJump(Code.eq, 0); // jne over the jump
+    var skip = Code.pc - 2;
+    Code.putJump(0);
+    var exit = Code.pc - 2;
+    Code.fixup(skip);
+    Code.put(Code.const_1);
+    Code.put(Code.store_n);
+    Code.fixup(exit);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+
+    assertArrayEquals(
+        new byte[] {
+          Code.enter, 0, 2, Code.load_n, Code.load_n + 1, (byte) (Code.jcc + Code.eq), 0, 5,
+          Code.const_1, Code.store_n, Code.exit, Code.return_
+        },
+        optimize());
+  }
+
+  @Test
+  public void localVariableSequencesAreShortened() {
+    Code.pc = 0;
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(5);
+    Code.put(Code.load);
+    Code.put(4);
+    Code.put(Code.const_);
+    Code.put4(2);
+    Code.put(Code.add);
+    Code.put(Code.store);
+    Code.put(4); // x += 2
+    Code.put(Code.load);
+    Code.put(1);
+    Code.put(Code.store);
+    Code.put(4);
+    Code.put(Code.load);
+    Code.put(4); // y = x
+    Code.put(Code.store);
+    Code.put(2);
+    Code.put(Code.load_n + 2);
+    Code.put(Code.store_n + 2); // y = y
+    Code.put(Code.dup);
+    Code.put(Code.pop);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+
+    assertArrayEquals(
+        new byte[] {
+          Code.enter, 0, 5, Code.inc, 4, 2, Code.load_n + 1, Code.dup, Code.store, 4,
+          Code.store_n + 2, Code.exit, Code.return_
+        },
+        optimize());
+  }
+
+  @Test
+  public void sequencesWithJumpsIntoTheirMiddleAreKept() throws Exception {
+    Code.pc = 0;
+    // x = 5; push x, 2; if (x == 5) goto add; pop both, push x, 3; add: x = x + 3 or x + 2
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(1);
+    Code.put(Code.const_5);
+    Code.put(Code.store_n);
+    Code.put(Code.load_n);
+    Code.put(Code.const_2);
+    Code.put(Code.load_n);
+    Code.put(Code.const_5);
+    var add = Code.pc + 1;
+    Code.putFalseJump(Code.ne, 0);
+    Code.put(Code.pop);
+    Code.put(Code.pop);
+    Code.put(Code.load_n);
+    Code.put(Code.const_3);
+    Code.fixup(add);
+    Code.put(Code.add);
+    Code.put(Code.store_n);
+    Code.put(Code.load_n);
+    Code.put(Code.const_n);
+    Code.put(Code.print);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    var original = code();
+    assertEquals("7", CompilationHelper.runCode(""));
+
+    // load x; const 3; add; store x would be inc x, 3, but the jump to add would then skip the
+    // addition of the 2 it has pushed.
+    assertArrayEquals(original, optimize());
+    assertEquals("7", CompilationHelper.runCode(""));
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import java.util.Arrays;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class StrengthReducerTest {
+
+  @Test
+  public void multiplicationsAreReplacedByAdditionsAndShifts() {
+    Code.pc = 0;
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(1);
+    Code.put(Code.const_n);
+    Code.put(Code.store_n);
+    var loopStart = Code.pc;
+    Code.put(Code.load_n);
+    Code.put(Code.const_3);
+    Code.put(Code.mul);
+    Code.put(Code.pop);
+    Code.put(Code.inc);
+    Code.put(0);
+    Code.put(1);
+    Code.put(Code.load_n);
+    Code.put(Code.const_5);
+    Code.putFalseJump(Code.ge, loopStart);
+    Code.put(Code.load_n);
+    Code.put(Code.const_4);
+    Code.put(Code.mul);
+    Code.put(Code.pop);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    var strengthReducer = StrengthReducer.reduce(codeModel);
+    codeModel.encode();
+
+    assertEquals(1, strengthReducer.getInductionVariableCount());
+    assertEquals(1, strengthReducer.getLoopMultiplicationCount());
+    assertEquals(1, strengthReducer.getShiftCount());
+    assertArrayEquals(
+        new byte[] {
+          Code.enter, 0, 2, Code.const_n, Code.store_n, Code.load_n, Code.const_3, Code.mul,
+          Code.store_n + 1, Code.load_n + 1, Code.pop, Code.inc, 0, 1, Code.inc, 1, 3, Code.load_n,
+          Code.const_5, (byte) (Code.jcc + Code.lt), -1, -10, Code.load_n, Code.const_2, Code.shl,
+          Code.pop, Code.exit, Code.return_
+        },
+        Arrays.copyOf(Code.buf, Code.pc));
+  }
+
+  @Test
+  public void multiplicationsAreStrengthReduced() throws Exception {
+    var source =
+        """
+        program StrengthReduction
+          int a[];
+        {
+          void main()
+          int i, j, s;
+          {
+            a = new int[40];
+            j = 0;
+            do {
+              i = 0;
+              do { a[i * 4] = a[i * 4] + i * 3 + j; a[i * 4 + 1] = i * 200; i++; } while (i < 10);
+              j++;
+            } while (j < 5);
+            s = 0; i = 0;
+            do { s = s + a[i] * 8; i++; } while (i < 40);
+            print(s); print(' '); print(a[36]); print(' '); print(a[37]);
+          }
+        }
+        """;
+    var expected = "78200 145 1800";
+
+    var passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("strength-reduction", false);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+
+    passManager = CompilationHelper.createPassManager(1);
+    objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals(expected, CompilationHelper.runVM(objFile, ""));
+
+    var strengthReduction = passManager.getStatistics("strength-reduction");
+    assertEquals(3, strengthReduction.getCount("induction variables introduced"));
+    assertEquals(5, strengthReduction.getCount("loop multiplications removed"));
+    assertEquals(2, strengthReduction.getCount("multiplications shifted"));
+  }
+
+  @Test
+  public void loopsEnteredPastTheirStartAreLeftAlone() throws Exception {
+    Code.pc = 0;
+    // i = 10; s = 0; goto next; do { s = s + i * 3; next: i++; } while (i < 15); print(s);
+    Code.put(Code.enter);
+    Code.put(0);
+    Code.put(2);
+    Code.put(Code.const_);
+    Code.put4(10);
+    Code.put(Code.store_n);
+    Code.put(Code.const_n);
+    Code.put(Code.const_n);
+    var next = Code.pc + 1;
+    Code.putFalseJump(Code.ne, 0);
+    Code.put(Code.const_n);
+    Code.put(Code.store_n + 1);
+    var loopStart = Code.pc;
+    Code.put(Code.load_n + 1);
+    Code.put(Code.load_n);
+    Code.put(Code.const_3);
+    Code.put(Code.mul);
+    Code.put(Code.add);
+    Code.put(Code.store_n + 1);
+    Code.fixup(next);
+    Code.put(Code.inc);
+    Code.put(0);
+    Code.put(1);
+    Code.put(Code.load_n);
+    Code.put(Code.const_);
+    Code.put4(15);
+    Code.putFalseJump(Code.ge, loopStart);
+    Code.put(Code.load_n + 1);
+    Code.put(Code.const_n);
+    Code.put(Code.print);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    var code = Arrays.copyOf(Code.buf, Code.pc);
+    // 11 * 3 + 12 * 3 + 13 * 3 + 14 * 3; a product set before the loop would be skipped.
+    assertEquals("150", CompilationHelper.runCode(""));
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    var strengthReducer = StrengthReducer.reduce(codeModel);
+    codeModel.encode();
+
+    assertEquals(0, strengthReducer.getInductionVariableCount());
+    assertArrayEquals(code, Arrays.copyOf(Code.buf, Code.pc));
+    assertEquals("150", CompilationHelper.runCode(""));
+  }
+
+  @Test
+  public void inductionVariablesWrittenOutsideTheLoopAreReducedInsideIt() throws Exception {
+    var source =
+        """
+        program StrengthReductionEdges
+        {
+          void main()
+          int i, j, k, s;
+          {
+            s = 0; i = 0; j = 0;
+            do {
+              i = i * 2 + j;
+              k = 0;
+              do { s = s + i * 5; i++; k++; } while (k < 3);
+              print(i); print(' ');
+              j++;
+            } while (j < 4);
+            i = 100;
+            print(s + i * 5);
+          }
+        }
+        """;
+    var expected = "3 10 25 56 1790";
+
+    var passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("strength-reduction", false);
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+
+    passManager = CompilationHelper.createPassManager(1);
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+    // The outer loop stores to i, so only the inner loop keeps i * 5 in a local, which is set
+    // again every time the inner loop is entered.
+    var strengthReduction = passManager.getStatistics("strength-reduction");
+    assertEquals(1, strengthReduction.getCount("induction variables introduced"));
+    assertEquals(1, strengthReduction.getCount("loop multiplications removed"));
+    assertEquals(1, strengthReduction.getCount("multiplications shifted"));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import java.util.Arrays;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class TailCallEliminatorTest {
+
+  @Test
+  public void recursiveCallIsReplacedByJumpWithAccumulator() {
+    Code.pc = 0;
+    // int fact(int n) { if (n <= 1) return 1; return n * fact(n - 1); }
+    Code.put(Code.enter);
+    Code.put(1);
+    Code.put(1);
+    Code.put(Code.load_n);
+    Code.put(Code.const_1);
+    Code.putFalseJump(Code.le, 0);
+    var elseJump = Code.pc - 2;
+    Code.put(Code.const_1);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+    Code.fixup(elseJump);
+    Code.put(Code.load_n);
+    Code.put(Code.load_n);
+    Code.put(Code.const_1);
+    Code.put(Code.sub);
+    Code.put(Code.call);
+    Code.put2(-Code.pc + 1);
+    Code.put(Code.mul);
+    Code.put(Code.exit);
+    Code.put(Code.return_);
+
+    var codeModel = CodeModel.decode().orElseThrow();
+    var tailCallEliminator = TailCallEliminator.eliminate(codeModel);
+    codeModel.encode();
+
+    assertEquals(0, tailCallEliminator.getTailCallCount());
+    assertEquals(1, tailCallEliminator.getAccumulatedCallCount());
+    assertArrayEquals(
+        new byte[] {
+          Code.enter, 1, 2, Code.const_1, Code.store_n + 1, Code.load_n, Code.const_1,
+          (byte) (Code.jcc + Code.gt), 0, 8, Code.const_1, Code.load_n + 1, Code.mul, Code.exit,
+          Code.return_, Code.load_n, Code.load_n, Code.const_1, Code.sub, Code.store_n,
+          Code.load_n + 1, Code.mul, Code.store_n + 1, Code.jmp, -1, -18, Code.mul, Code.exit,
+          Code.return_
+        },
+        Arrays.copyOf(Code.buf, Code.pc));
+  }
+
+  @Test
+  public void recursiveCallsInTailPositionBecomeLoops() throws Exception {
+    var source =
+        """
+        program TailCalls
+        {
+          int triangle(int n) { if (n == 0) return 0; return n + triangle(n - 1); }
+          int gcd(int a, int b) { if (b == 0) return a; return gcd(b, a % b); }
+          void countDown(int n) { if (n == 0) return; print(n); countDown(n - 1); }
+
+          void main()
+          {
+            print(triangle(10000)); print(' '); print(gcd(1071, 462)); print(' '); countDown(5);
+          }
+        }
+        """;
+
+    var passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("tail-calls", false);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    // Every call keeps its operands on the expression stack, which is too small for the recursion.
+    assertTrue(CompilationHelper.runVM(objFile, "").contains("stack overflow"));
+
+    passManager = CompilationHelper.createPassManager(1);
+    objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals("50005000 21 54321", CompilationHelper.runVM(objFile, ""));
+
+    var tailCalls = passManager.getStatistics("tail-calls");
+    assertEquals(2, tailCalls.getCount("tail calls eliminated"));
+    assertEquals(1, tailCalls.getCount("accumulated calls eliminated"));
+  }
+
+  @Test
+  public void onlyCallsInTailPositionBecomeJumpsWhenOperationsAreMixed() throws Exception {
+    var source =
+        """
+        program TailCallEdges
+        {
+          int mixed(int n, int k) {
+            if (n == 0) return 1;
+            if (k == 0) return mixed(n - 1, 1);
+            if (n % 2 == 0) return 2 + mixed(n - 1, k);
+            return 3 * mixed(n - 1, k);
+          }
+          void countUp(int n) { if (n == 0) return; countUp(n - 1); print(n); }
+          int minus(int n) { if (n == 0) return 0; return minus(n - 1) - 1; }
+
+          void main()
+          {
+            print(mixed(5, 1)); print(' '); print(mixed(6, 0)); print(' ');
+            countUp(5); print(' '); print(minus(50));
+          }
+        }
+        """;
+    var expected = "51 51 12345 -50";
+
+    var passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("tail-calls", false);
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+
+    passManager = CompilationHelper.createPassManager(1);
+    assertEquals(
+        expected,
+        CompilationHelper.runVM(CompilationHelper.compileToFile(source, passManager), ""));
+    // mixed both adds to and multiplies its results, so only its plain tail call becomes a jump.
+    // countUp prints after its call and minus subtracts from its result, so theirs stay calls: as
+    // jumps, countUp would print in the wrong order and minus would return 0.
+    var tailCalls = passManager.getStatistics("tail-calls");
+    assertEquals(1, tailCalls.getCount("tail calls eliminated"));
+    assertEquals(0, tailCalls.getCount("accumulated calls eliminated"));
+  }
+}
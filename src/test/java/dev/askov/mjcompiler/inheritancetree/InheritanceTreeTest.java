@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.inheritancetree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import dev.askov.mjcompiler.symboltable.MJTab;
+import dev.askov.mjcompiler.symboltable.OpenAddressingDataStructure;
+import dev.askov.mjcompiler.vmt.DispatchPlanner;
+import dev.askov.mjcompiler.vmt.DispatchTableCreator;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import rs.etf.pp1.symboltable.concepts.Obj;
+import rs.etf.pp1.symboltable.concepts.Struct;
+
+/**
+ * @author Danijel Askov
+ */
+public class InheritanceTreeTest {
+
+  private static final int SIZE = 10_000;
+
+  /** Creates a class that declares {@code int f()} and adds it to the inheritance tree. */
+  private static Obj addClass(String name, Obj superclass) {
+    var method = new Obj(Obj.Meth, "f", MJTab.intType);
+    var members = new OpenAddressingDataStructure();
+    members.insertKey(method);
+    var clss = new Obj(Obj.Type, name, new Struct(Struct.Class, members));
+    if (superclass == null) {
+      InheritanceTree.addNodeForClass(clss);
+    } else {
+      clss.getType().setElementType(superclass.getType());
+      InheritanceTree.addNodeForClass(clss, superclass);
+    }
+    return clss;
+  }
+
+  private static Obj method(Obj clss) {
+    return clss.getType().getMembers().iterator().next();
+  }
+
+  private static void assertEveryClassCallsItsOwnMethod(List<Obj> classes) {
+    InheritanceTree.ROOT_NODE.accept(new DispatchTableCreator());
+    InheritanceTree.numberClassesInPreOrder();
+
+    var root = InheritanceTree.getNode(classes.get(0)).orElseThrow();
+    var ranges =
+        DispatchPlanner.plan(InheritanceTree.ROOT_NODE).getRanges(method(classes.get(0)), root);
+
+    assertEquals(SIZE - 1, root.getLastSubtreeClassId());
+    assertEquals(SIZE, ranges.size());
+    for (var range : ranges) {
+      assertEquals(range.getFirstClassId(), range.getLastClassId());
+    }
+    for (var clss : classes) {
+      var dispatchTable = InheritanceTree.getNode(clss).orElseThrow().getDispatchTable();
+      assertEquals(1, dispatchTable.getMethods().size());
+      assertSame(method(clss), dispatchTable.getMethods().get(0));
+    }
+  }
+
+  @Test
+  public void deepHierarchy() {
+    CompilationHelper.resetCompilerState();
+    List<Obj> classes = new ArrayList<>();
+    Obj superclass = null;
+    for (var i = 0; i < SIZE; i++) {
+      superclass = addClass("C" + i, superclass);
+      classes.add(superclass);
+    }
+
+    assertEveryClassCallsItsOwnMethod(classes);
+  }
+
+  @Test
+  public void wideHierarchy() {
+    CompilationHelper.resetCompilerState();
+    List<Obj> classes = new ArrayList<>();
+    var base = addClass("C0", null);
+    classes.add(base);
+    for (var i = 1; i < SIZE; i++) {
+      classes.add(addClass("C" + i, base));
+    }
+
+    assertEveryClassCallsItsOwnMethod(classes);
+  }
+
+  @Test
+  public void programsWithManyClassesCompileOnTheDefaultStack() throws Exception {
+    var source = new StringBuilder("program Test\n");
+    for (var i = 0; i < SIZE; i++) {
+      var declaresMethod = i == 0 || i == SIZE - 1;
+      source
+          .append("class C")
+          .append(i)
+          .append(i > 0 ? " extends C" + (i - 1) : "")
+          .append(declaresMethod ? " { { int f() { return " + i + "; } } }\n" : " { }\n");
+    }
+    source
+        .append("{\n  void main()\n  C0 c;\n  {\n")
+        .append("    c = new C0;\n    print(c.f(), 0);\n")
+        .append("    c = new C")
+        .append(SIZE - 1)
+        .append(";\n    print(c.f(), 0);\n")
+        .append("  }\n}\n");
+
+    assertEquals("0" + (SIZE - 1), CompilationHelper.compileAndRun(source.toString()));
+  }
+}
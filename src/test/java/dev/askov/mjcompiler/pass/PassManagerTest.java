@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.pass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+
+/**
+ * @author Danijel Askov
+ */
+public class PassManagerTest {
+
+  private static final String SOURCE =
+      """
+      program Passes
+        class A {
+          {
+            int f() { return 1; }
+          }
+        }
+        class B extends A {
+          {
+            int f() { return 2; }
+          }
+        }
+      {
+        void unused() {
+          print(true);
+        }
+
+        void main()
+        A a;
+        {
+          a = new B;
+          print(a.f());
+          a = new A;
+          print(a.f());
+        }
+      }
+      """;
+
+  private static boolean isEnabled(PassManager passManager, String name) {
+    for (var pass : passManager.getPasses()) {
+      if (pass.getName().equals(name)) {
+        return passManager.isEnabled(pass);
+      }
+    }
+    throw new IllegalArgumentException(name);
+  }
+
+  @Test
+  public void passesAreEnabledByOptimizationLevel() {
+    var passManager = PassManager.create();
+    assertEquals(0, passManager.getOptimizationLevel());
+    for (var pass : passManager.getPasses()) {
+      assertFalse(pass.getName(), passManager.isEnabled(pass));
+    }
+
+    passManager.setOptimizationLevel(1);
+    assertTrue(isEnabled(passManager, "tree-shaking"));
+    assertTrue(isEnabled(passManager, "devirtualize"));
+    assertFalse(isEnabled(passManager, "inline"));
+
+    passManager.setOptimizationLevel(PassManager.MAX_OPTIMIZATION_LEVEL);
+    for (var pass : passManager.getPasses()) {
+      assertTrue(pass.getName(), passManager.isEnabled(pass));
+    }
+  }
+
+  @Test
+  public void passesCanBeToggledByName() {
+    var passManager = CompilationHelper.createPassManager(0);
+
+    assertTrue(passManager.toggle("devirtualize", true));
+    assertFalse(passManager.toggle("no-such-pass", true));
+    passManager.setOptimizationLevel(2);
+    assertTrue(passManager.toggle("tree-shaking", false));
+
+    assertTrue(isEnabled(passManager, "devirtualize"));
+    assertFalse(isEnabled(passManager, "tree-shaking"));
+  }
+
+  @Test
+  public void programsBehaveTheSameAtEveryOptimizationLevel() throws Exception {
+    var codeSizes = new int[PassManager.MAX_OPTIMIZATION_LEVEL + 1];
+    for (var level = 0; level <= PassManager.MAX_OPTIMIZATION_LEVEL; level++) {
+      var passManager = CompilationHelper.createPassManager(level);
+
+      var objFile = CompilationHelper.compileToFile(SOURCE, passManager);
+      codeSizes[level] = Code.pc;
+      assertEquals("21", CompilationHelper.runVM(objFile, ""));
+
+      var treeShaking = passManager.getStatistics("tree-shaking");
+      assertEquals(level > 0 ? 1 : 0, treeShaking.getCount("methods removed"));
+      assertEquals(level > 0, treeShaking.getCount("bytes removed") > 0);
+    }
+    assertTrue(codeSizes[1] < codeSizes[0]);
+  }
+
+  @Test
+  public void monomorphicCallsAreOnlyDevirtualizedByThePass() throws Exception {
+    var source = SOURCE.replace("a = new A;", "a = new B;");
+
+    var passManager = CompilationHelper.createPassManager(1);
+    CompilationHelper.compileToFile(source, passManager);
+    var devirtualize = passManager.getStatistics("devirtualize");
+    assertEquals(2, devirtualize.getCount("virtual call sites"));
+    assertEquals(2, devirtualize.getCount("call sites devirtualized"));
+
+    passManager = CompilationHelper.createPassManager(1);
+    passManager.toggle("devirtualize", false);
+    var objFile = CompilationHelper.compileToFile(source, passManager);
+    assertEquals("22", CompilationHelper.runVM(objFile, ""));
+    assertEquals(0, passManager.getStatistics("devirtualize").getCount("call sites devirtualized"));
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.symboltable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import java.util.List;
+import org.junit.Test;
+import rs.etf.pp1.symboltable.concepts.Obj;
+import rs.etf.pp1.symboltable.concepts.Struct;
+
+/**
+ * @author Danijel Askov
+ */
+public class MJTabTest {
+
+  private static final String PROGRAM =
+      """
+      program P
+      {
+        void main()
+          bool b;
+          int a[], c[];
+        {
+          b = true;
+          print(b);
+          a = new int[3];
+          a[0] = 1; a[1] = 2; a[2] = 3;
+          c = a + 2 * a;
+          print(a * c);
+        }
+      }
+      """;
+
+  private static List<Obj> helperMethods() {
+    return List.of(
+        MJTab.printBoolMethod,
+        MJTab.readBoolMethod,
+        MJTab.vecTimesVecMethod,
+        MJTab.vecTimesScalarMethod,
+        MJTab.scalarTimesVecMethod,
+        MJTab.vecPlusVecMethod);
+  }
+
+  @Test
+  public void initClearsWhatTheLastCompilationLeftInTheSharedUniverse() {
+    MJTab.init();
+    for (var helperMethod : helperMethods()) {
+      helperMethod.setAdr(42);
+    }
+    var classType = new Struct(Struct.Class);
+    MJTab.openScope();
+    MJTab.insert(Obj.Type, "C", classType);
+    MJTab.nextClassId();
+
+    MJTab.init();
+
+    for (var helperMethod : helperMethods()) {
+      assertEquals(helperMethod.getName(), 0, helperMethod.getAdr());
+    }
+    assertNull(MJTab.findObjForClass(classType));
+    assertEquals(0, MJTab.nextClassId());
+  }
+
+  @Test
+  public void programCompiledTwiceInOneRunBehavesTheSame() throws Exception {
+    var first = CompilationHelper.runVM(CompilationHelper.compileToFile(PROGRAM), "");
+    var second = CompilationHelper.runVM(CompilationHelper.compileToFile(PROGRAM), "");
+
+    assertEquals("true42", first);
+    assertEquals(first, second);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.symboltable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import rs.etf.pp1.symboltable.Tab;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * @author Danijel Askov
+ */
+public class OpenAddressingDataStructureTest {
+
+  private static Obj var(String name) {
+    return new Obj(Obj.Var, name, Tab.intType);
+  }
+
+  @Test
+  public void insertedSymbolsAreFound() {
+    var table = new OpenAddressingDataStructure();
+    var x = var("x");
+    var y = var("y");
+
+    assertTrue(table.insertKey(x));
+    assertTrue(table.insertKey(y));
+
+    assertSame(x, table.searchKey("x"));
+    assertSame(y, table.searchKey(new String("y")));
+    assertNull(table.searchKey("z"));
+    assertEquals(2, table.numSymbols());
+  }
+
+  @Test
+  public void duplicateNamesAreRejected() {
+    var table = new OpenAddressingDataStructure();
+    var first = var("x");
+
+    assertTrue(table.insertKey(first));
+    assertFalse(table.insertKey(var("x")));
+
+    assertSame(first, table.searchKey("x"));
+    assertEquals(1, table.numSymbols());
+  }
+
+  @Test
+  public void symbolsKeepInsertionOrderAcrossGrowth() {
+    var table = new OpenAddressingDataStructure();
+    var expected = new ArrayList<Obj>();
+    for (var i = 0; i < 100; i++) {
+      var obj = var("v" + (99 - i));
+      expected.add(obj);
+      assertTrue(table.insertKey(obj));
+    }
+
+    assertEquals(expected, new ArrayList<>(table.symbols()));
+    for (var obj : expected) {
+      assertSame(obj, table.searchKey(obj.getName()));
+    }
+  }
+
+  @Test
+  public void deletedSymbolsAreNoLongerFound() {
+    var table = new OpenAddressingDataStructure();
+    var a = var("a");
+    var b = var("b");
+    var c = var("c");
+    table.insertKey(a);
+    table.insertKey(b);
+    table.insertKey(c);
+
+    assertTrue(table.deleteKey("b"));
+    assertFalse(table.deleteKey("b"));
+
+    assertNull(table.searchKey("b"));
+    assertSame(c, table.searchKey("c"));
+    assertEquals(List.of(a, c), new ArrayList<>(table.symbols()));
+  }
+
+  @Test
+  public void layeredTableLeavesSharedTableUntouched() {
+    var shared = new OpenAddressingDataStructure();
+    var a = var("a");
+    var b = var("b");
+    shared.insertKey(a);
+    shared.insertKey(b);
+
+    var table = new OpenAddressingDataStructure(shared);
+    var c = var("c");
+
+    assertFalse(table.insertKey(var("a")));
+    assertTrue(table.insertKey(c));
+    assertSame(a, table.searchKey("a"));
+    assertEquals(List.of(a, b, c), new ArrayList<>(table.symbols()));
+
+    assertTrue(table.deleteKey("a"));
+    assertNull(table.searchKey("a"));
+    assertEquals(List.of(b, c), new ArrayList<>(table.symbols()));
+
+    assertSame(a, shared.searchKey("a"));
+    assertNull(shared.searchKey("c"));
+    assertEquals(List.of(a, b), new ArrayList<>(shared.symbols()));
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2018  Danijel Askov
+ *
+ * This file is part of MicroJava Compiler.
+ *
+ * MicroJava Compiler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MicroJava Compiler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package dev.askov.mjcompiler.vmt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import dev.askov.mjcompiler.CompilationHelper;
+import dev.askov.mjcompiler.bytecode.CodeModel;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTree;
+import dev.askov.mjcompiler.inheritancetree.InheritanceTreeNode;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import rs.etf.pp1.mj.runtime.Code;
+import rs.etf.pp1.symboltable.concepts.Obj;
+
+/**
+ * @author Danijel Askov
+ */
+public class DispatchTableTest {
+
+  private static final String HIERARCHY =
+      """
+      program Test
+        class A {
+          {
+            int f() { return 1; }
+          }
+        }
+        class B extends A {
+          {
+            int g() { return 2; }
+          }
+        }
+        class C extends B {
+          {
+            int g() { return 3; }
+            int f() { return 4; }
+          }
+        }
+      {
+        void main()
+        C c;
+        {
+          c = new C;
+          print(c.f());
+          print(c.g());
+        }
+      }
+      """;
+
+  private static InheritanceTreeNode node(String className) {
+    var found = new ArrayList<InheritanceTreeNode>();
+    InheritanceTree.ROOT_NODE.accept(
+        node -> {
+          if (node.getClss().getName().equals(className)) {
+            found.add(node);
+          }
+        });
+    return found.get(0);
+  }
+
+  private static List<String> slots(String className) {
+    var result = new ArrayList<String>();
+    for (var method : node(className).getDispatchTable().getMethods()) {
+      result.add(method.getName());
+    }
+    return result;
+  }
+
+  @Test
+  public void inheritedSlotsComeFirst() throws Exception {
+    CompilationHelper.compileToFile(HIERARCHY);
+
+    assertEquals(List.of("f"), slots("A"));
+    assertEquals(List.of("f", "g"), slots("B"));
+    assertEquals(List.of("f", "g"), slots("C"));
+
+    var b = node("B").getDispatchTable();
+    var c = node("C").getDispatchTable();
+    assertEquals(0, b.getSlot(b.getMethods().get(0)).getAsInt());
+    assertEquals(1, c.getSlot(b.getMethods().get(1)).getAsInt());
+  }
+
+  @Test
+  public void overridingMethodReplacesInheritedSlot() throws Exception {
+    CompilationHelper.compileToFile(HIERARCHY);
+
+    var a = node("A").getDispatchTable().getMethods().get(0);
+    var c = node("C").getDispatchTable();
+    var cf = c.getMethods().get(0);
+
+    assertEquals(2, c.getMethods().size());
+    assertEquals(cf, c.getSameSignatureMethod(a).orElseThrow());
+    assertEquals(false, cf == a);
+  }
+
+  @Test
+  public void classesSharingATargetShareADispatchRange() throws Exception {
+    CompilationHelper.compileToFile(
+        """
+        program Test
+          class A {
+            {
+              int f() { return 1; }
+            }
+          }
+          class B extends A {
+            {
+              int f() { return 2; }
+            }
+          }
+          class C extends B {
+          }
+          class D extends A {
+          }
+        {
+          void main() {}
+        }
+        """);
+
+    var af = node("A").getDispatchTable().getMethods().get(0);
+    var bf = node("B").getDispatchTable().getMethods().get(0);
+    var ranges =
+        DispatchPlanner.plan(InheritanceTree.ROOT_NODE).getPlan(af).orElseThrow().getRanges();
+
+    assertEquals(3, ranges.size());
+    assertRange(ranges.get(0), node("A"), node("A"), af);
+    assertRange(ranges.get(1), node("B"), node("C"), bf);
+    assertRange(ranges.get(2), node("D"), node("D"), af);
+  }
+
+  @Test
+  public void classIdsAreAssignedInPreOrder() throws Exception {
+    CompilationHelper.compileToFile(
+        """
+        program Test
+          class A {
+          }
+          class X {
+          }
+          class B extends A {
+          }
+          class C extends A {
+          }
+          class D extends B {
+          }
+        {
+          void main() {}
+        }
+        """);
+
+    assertEquals(0, node("A").getClss().getLevel());
+    assertEquals(1, node("B").getClss().getLevel());
+    assertEquals(2, node("D").getClss().getLevel());
+    assertEquals(3, node("C").getClss().getLevel());
+    assertEquals(4, node("X").getClss().getLevel());
+    assertEquals(3, node("A").getLastSubtreeClassId());
+    assertEquals(2, node("B").getLastSubtreeClassId());
+  }
+
+  @Test
+  public void methodsNotOverriddenBelowStaticTypeAreMonomorphic() throws Exception {
+    CompilationHelper.compileToFile(
+        """
+        program Test
+          class A {
+            {
+              int f() { return 1; }
+              int g() { return 1; }
+            }
+          }
+          class B extends A {
+            {
+              int f() { return 2; }
+            }
+          }
+          class C extends B {
+            {
+              int g() { return 3; }
+            }
+          }
+        {
+          void main() {}
+        }
+        """);
+
+    var planner = DispatchPlanner.plan(InheritanceTree.ROOT_NODE);
+    var af = node("A").getDispatchTable().getMethods().get(0);
+    var ag = node("A").getDispatchTable().getMethods().get(1);
+
+    assertEquals(2, planner.getRanges(af, node("A")).size());
+    assertEquals(1, planner.getRanges(af, node("B")).size());
+    assertEquals(2, planner.getRanges(ag, node("B")).size());
+    assertEquals(1, planner.getRanges(ag, node("C")).size());
+  }
+
+  @Test
+  public void objectsAreTaggedWithTheirClassIdWithoutStaticData() throws Exception {
+    var objFile =
+        CompilationHelper.compileToFile(
+            """
+            program Test
+              class A {
+                {
+                  int f() { return 1; }
+                }
+              }
+              class B extends A {
+                {
+                  int f() { return 2; }
+                }
+              }
+              class C extends B {
+              }
+              class D extends A {
+              }
+            {
+              void main()
+              A a;
+              {
+                a = new B;
+                print(a.f());
+                a = new C;
+                print(a.f());
+                a = new D;
+                print(a.f());
+              }
+            }
+            """);
+
+    assertEquals("221", CompilationHelper.runVM(objFile, ""));
+    // The program has no global variables, and dispatch needs no static data either, so there is
+    // nothing to initialize before main.
+    assertEquals(0, Code.dataSize);
+    assertEquals(Code.enter, Code.buf[Code.mainPc]);
+    List<Integer> tags = new ArrayList<>();
+    var instructions = CodeModel.decode().orElseThrow().getInstructions();
+    for (var i = 0; i < instructions.size(); i++) {
+      var opcode = instructions.get(i).getOpcode();
+      assertNotEquals(Code.putstatic, opcode);
+      assertNotEquals(Code.getstatic, opcode);
+      if (opcode == Code.new_) {
+        tags.add(instructions.get(i + 2).getConstant());
+      }
+    }
+    assertEquals(
+        List.of(
+            node("B").getClss().getLevel(),
+            node("C").getClss().getLevel(),
+            node("D").getClss().getLevel()),
+        tags);
+  }
+
+  private static void assertRange(
+      DispatchPlan.Range range,
+      InheritanceTreeNode first,
+      InheritanceTreeNode last,
+      Obj target) {
+    assertEquals(first.getClss().getLevel(), range.getFirstClassId());
+    assertEquals(last.getClss().getLevel(), range.getLastClassId());
+    assertSame(target, range.getTarget());
+  }
+
+  @Test
+  public void callsTestLogarithmicallyManyClassIds() throws Exception {
+    var subclassCount = 64;
+    var source = new StringBuilder("program Test\n  class A { { int f() { return 0; } } }\n");
+    for (var i = 0; i < subclassCount; i++) {
+      source.append("  class B").append(i).append(" extends A { { int f() { return 1; } } }\n");
+    }
+    source.append("{\n  void main()\n  A a;\n  {\n    a = new A;\n    print(a.f());\n  }\n}\n");
+    CompilationHelper.compileToFile(source.toString());
+
+    var instructions = CodeModel.decode().orElseThrow().getInstructions();
+    var dispatchStart = 0;
+    while (instructions.get(dispatchStart).getOpcode() != Code.dup
+        || instructions.get(dispatchStart + 1).getOpcode() != Code.getfield) {
+      dispatchStart++;
+    }
+    // 65 ranges, one per class, take at most 7 tests to tell apart.
+    var maxTestCount = 7;
+    for (var i = -1; i < subclassCount; i++) {
+      var node = node(i < 0 ? "A" : "B" + i);
+      var classId = node.getClss().getLevel();
+      var testCount = 0;
+      var index = dispatchStart;
+      while (instructions.get(index).getOpcode() == Code.dup) {
+        var jump = instructions.get(index + 3);
+        assertEquals(Code.jcc + Code.lt, jump.getOpcode());
+        testCount++;
+        index =
+            classId < instructions.get(index + 2).getConstant()
+                ? instructions.indexOf(jump.getTarget())
+                : index + 4;
+      }
+      assertEquals(Code.pop, instructions.get(index).getOpcode());
+      var call = instructions.get(index + 1);
+      assertEquals(Code.call, call.getOpcode());
+      assertEquals(
+          node.getDispatchTable().getMethods().get(0).getAdr(), call.getTarget().getAddress());
+      assertTrue(testCount <= maxTestCount);
+    }
+  }
+
+  @Test
+  public void outputIsReproducible() throws Exception {
+    var first = Files.readAllBytes(CompilationHelper.compileToFile(HIERARCHY).toPath());
+    var second = Files.readAllBytes(CompilationHelper.compileToFile(HIERARCHY).toPath());
+
+    assertArrayEquals(first, second);
+  }
+}